@@ -0,0 +1,93 @@
+package com.cloudcart.benchmarks;
+
+import com.cloudcart.order.model.OrderItem;
+import com.cloudcart.order.model.PlaceOrderRequest;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * POST /orders body parsing: the typed single pass PlaceOrderHandler uses
+ * (PlaceOrderRequest through a cached ObjectReader) against the Map tree,
+ * convertValue and separate validation loop it replaced.
+ *
+ * Run with -prof gc for allocation per operation (gc.alloc.rate.norm).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlaceOrderParsingBenchmark {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final ObjectReader REQUEST_READER = MAPPER.readerFor(PlaceOrderRequest.class);
+
+    @Param({"1", "10", "100"})
+    private int items;
+
+    private String body;
+
+    @Setup
+    public void setUp() throws Exception {
+        List<Map<String, Object>> lines = new ArrayList<>(items);
+        for (int i = 0; i < items; i++) {
+            Map<String, Object> line = new LinkedHashMap<>();
+            line.put("productId", "prod-" + i);
+            line.put("quantity", 1 + i % 5);
+            line.put("price", 19.99 + i);
+            lines.add(line);
+        }
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("userId", "user-123");
+        request.put("items", lines);
+        body = MAPPER.writeValueAsString(request);
+    }
+
+    @Benchmark
+    public PlaceOrderRequest typedSinglePass() throws Exception {
+        return REQUEST_READER.readValue(body);
+    }
+
+    @Benchmark
+    public void mapThenConvert(Blackhole blackhole) throws Exception {
+        Map<String, Object> requestBody = MAPPER.readValue(body, new TypeReference<>() {});
+        String userId = (String) requestBody.get("userId");
+        List<OrderItem> orderItems = MAPPER.convertValue(
+                requestBody.get("items"), new TypeReference<List<OrderItem>>() {});
+        List<String> validationErrors = new ArrayList<>();
+        for (OrderItem item : orderItems) {
+            if (item.getProductId() == null || item.getProductId().isBlank()) {
+                validationErrors.add("productId is required for each item");
+            }
+            if (item.getQuantity() < 1) {
+                validationErrors.add("quantity must be >= 1 for productId: " + item.getProductId());
+            }
+            if (item.getPrice() < 0) {
+                validationErrors.add("price must be >= 0 for productId: " + item.getProductId());
+            }
+        }
+        blackhole.consume(userId);
+        blackhole.consume(orderItems);
+        blackhole.consume(validationErrors);
+    }
+}
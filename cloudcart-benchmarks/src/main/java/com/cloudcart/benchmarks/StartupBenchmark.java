@@ -0,0 +1,96 @@
+package com.cloudcart.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * First-invocation latency of each handler with and without priming.
+ *
+ * Every sample is a fresh JVM running {@link StartupProbe} once, with
+ * CRAC_PRIMING unset (primed) or set to false (unprimed); the environment is
+ * otherwise inherited, so the handlers reach the same tables as server mode.
+ * Run from the repository root, since the events are read from
+ * {@code <service>/events/}. The optional argument is the number of JVMs
+ * per handler and mode (default 5). Medians are reported.
+ */
+public final class StartupBenchmark {
+
+    private static final String[][] CASES = {
+            {"com.cloudcart.product.handler.ListProductsHandler", "cloudcart-product-catalog-java/events/list-products.json"},
+            {"com.cloudcart.product.handler.GetProductHandler", "cloudcart-product-catalog-java/events/get-product-missing.json"},
+            {"com.cloudcart.cart.handler.ViewCartHandler", "cloudcart-cart-service/events/view-cart.json"},
+            {"com.cloudcart.order.handler.ListOrdersHandler", "cloudcart-order-service/events/list-orders.json"},
+            {"com.cloudcart.order.handler.GetOrderHandler", "cloudcart-order-service/events/get-order-missing.json"},
+            {"com.cloudcart.payment.handler.ProcessPaymentHandler", "cloudcart-payment-service/events/order-placed-missing.json"},
+            {"com.cloudcart.shipment.handler.ProcessShipmentHandler", "cloudcart-shipment-service/events/payment-success-missing.json"},
+    };
+
+    private StartupBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        System.out.printf("%-22s %-8s %9s %9s %9s %9s%n", "handler", "priming", "init", "priming", "first", "second");
+        for (String[] c : CASES) {
+            if (!Files.exists(Path.of(c[1]))) {
+                System.out.printf("%-22s skipped: %s not found%n", simpleName(c[0]), c[1]);
+                continue;
+            }
+            for (boolean priming : new boolean[] {true, false}) {
+                List<double[]> samples = new ArrayList<>(runs);
+                for (int i = 0; i < runs; i++) samples.add(probe(c[0], c[1], priming));
+                System.out.printf("%-22s %-8s %9.1f %9.1f %9.1f %9.1f%n", simpleName(c[0]), priming ? "on" : "off",
+                        median(samples, 0), median(samples, 1), median(samples, 2), median(samples, 3));
+            }
+        }
+    }
+
+    // Returns {init, priming, first, second} in milliseconds
+    private static double[] probe(String handlerClass, String event, boolean priming) throws Exception {
+        ProcessBuilder builder = new ProcessBuilder(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"),
+                StartupProbe.class.getName(), handlerClass, event)
+                .redirectErrorStream(true);
+        if (priming) {
+            builder.environment().remove("CRAC_PRIMING");
+        } else {
+            builder.environment().put("CRAC_PRIMING", "false");
+        }
+        Process process = builder.start();
+        String result = null;
+        // Handler logs share stdout; only the probe's result line is kept
+        try (BufferedReader out = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            for (String line; (line = out.readLine()) != null; ) {
+                if (line.startsWith(StartupProbe.RESULT_PREFIX)) result = line;
+            }
+        }
+        if (process.waitFor() != 0 || result == null) {
+            throw new IllegalStateException("Startup probe failed for " + handlerClass + " (exit " + process.exitValue() + ")");
+        }
+        double[] values = new double[4];
+        String[] fields = result.substring(StartupProbe.RESULT_PREFIX.length()).split(" ");
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Double.parseDouble(fields[i].substring(fields[i].indexOf('=') + 1));
+        }
+        return values;
+    }
+
+    private static double median(List<double[]> samples, int field) {
+        double[] values = samples.stream().mapToDouble(s -> s[field]).toArray();
+        Arrays.sort(values);
+        int mid = values.length / 2;
+        return values.length % 2 == 1 ? values[mid] : (values[mid - 1] + values[mid]) / 2;
+    }
+
+    private static String simpleName(String className) {
+        return className.substring(className.lastIndexOf('.') + 1);
+    }
+}
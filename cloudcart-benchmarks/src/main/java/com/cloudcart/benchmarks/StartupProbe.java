@@ -0,0 +1,66 @@
+package com.cloudcart.benchmarks;
+
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.cloudcart.server.LocalContext;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.crac.Resource;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * One cold start, run by {@link StartupBenchmark} in a fresh JVM:
+ * {@code StartupProbe <handler class> <event file>}.
+ *
+ * Loads and constructs the handler, then, unless CRAC_PRIMING=false, runs its
+ * beforeCheckpoint and afterRestore hooks as a SnapStart snapshot and restore
+ * would. It then invokes the handler twice with the event and prints one
+ * result line: init, priming, first and second call in milliseconds.
+ */
+public final class StartupProbe {
+
+    static final String RESULT_PREFIX = "STARTUP ";
+
+    private StartupProbe() {
+    }
+
+    @SuppressWarnings("unchecked")
+    public static void main(String[] args) throws Exception {
+        String handlerClass = args[0];
+        Map<String, Object> event = new ObjectMapper().readValue(
+                Files.readString(Path.of(args[1])), new TypeReference<>() {});
+        boolean priming = !"false".equalsIgnoreCase(System.getenv("CRAC_PRIMING"));
+
+        long start = System.nanoTime();
+        RequestHandler<Map<String, Object>, Map<String, Object>> handler =
+                (RequestHandler<Map<String, Object>, Map<String, Object>>) Class.forName(handlerClass)
+                        .getDeclaredConstructor().newInstance();
+        double initMillis = millisSince(start);
+
+        start = System.nanoTime();
+        if (priming && handler instanceof Resource resource) {
+            resource.beforeCheckpoint(null);
+            resource.afterRestore(null);
+        }
+        double primingMillis = millisSince(start);
+
+        start = System.nanoTime();
+        handler.handleRequest(event, new LocalContext(null, "StartupProbe", 30, 512));
+        double firstMillis = millisSince(start);
+
+        start = System.nanoTime();
+        handler.handleRequest(event, new LocalContext(null, "StartupProbe", 30, 512));
+        double secondMillis = millisSince(start);
+
+        System.out.printf(Locale.ROOT, "%sinit=%.1f priming=%.1f first=%.1f second=%.1f%n",
+                RESULT_PREFIX, initMillis, primingMillis, firstMillis, secondMillis);
+        System.exit(0);
+    }
+
+    private static double millisSince(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000.0;
+    }
+}
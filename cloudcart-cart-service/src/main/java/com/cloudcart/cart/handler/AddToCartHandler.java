@@ -4,17 +4,23 @@ import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.cloudcart.cart.model.CartItem;
 import com.cloudcart.cart.repository.CartRepository;
+import com.cloudcart.common.crac.Priming;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.crac.Resource;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
-public class AddToCartHandler implements RequestHandler<Map<String, Object>, Map<String, Object>> {
+public class AddToCartHandler implements RequestHandler<Map<String, Object>, Map<String, Object>>, Resource {
 
     private static final ObjectMapper MAPPER = new ObjectMapper();
     private static final CartRepository REPOSITORY = new CartRepository();
 
+    public AddToCartHandler() {
+        Priming.register(this);
+    }
+
     @Override
     public Map<String, Object> handleRequest(Map<String, Object> input, Context context) {
         try {
@@ -58,4 +64,22 @@ public class AddToCartHandler implements RequestHandler<Map<String, Object>, Map
             "body", body
         );
     }
+
+    @Override
+    public void beforeCheckpoint(org.crac.Context<? extends Resource> context) {
+        Priming.run("serialization", () -> Priming.roundTrip(MAPPER, new CartItem()));
+        dryRun();
+    }
+
+    @Override
+    public void afterRestore(org.crac.Context<? extends Resource> context) {
+        dryRun();
+    }
+
+    // Read-only call that warms the SDK client and its connection
+    private void dryRun() {
+        Priming.run("dry-run", () -> {
+            REPOSITORY.getCart(Priming.DRY_RUN_ID);
+        });
+    }
 }
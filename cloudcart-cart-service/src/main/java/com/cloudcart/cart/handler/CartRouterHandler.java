@@ -0,0 +1,40 @@
+package com.cloudcart.cart.handler;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+
+import java.util.Map;
+
+/**
+ * Single entry point for all cart routes, deployed by cloudcart-cart-router-template.yaml.
+ * Dispatches on the proxy event's httpMethod and resource to the per-route handlers,
+ * which are created once at init and keep their own SnapStart priming.
+ */
+public class CartRouterHandler implements RequestHandler<Map<String, Object>, Map<String, Object>> {
+
+    private static final Map<String, RequestHandler<Map<String, Object>, Map<String, Object>>> ROUTES = Map.of(
+            "POST /cart", new AddToCartHandler(),
+            "GET /cart/{userId}", new ViewCartHandler(),
+            "DELETE /cart/{userId}", new ClearCartHandler(),
+            "DELETE /cart/{userId}/{productId}", new RemoveFromCartHandler(),
+            "PATCH /cart/{userId}/{productId}", new UpdateQuantityHandler()
+    );
+
+    @Override
+    public Map<String, Object> handleRequest(Map<String, Object> input, Context context) {
+        String route = input.get("httpMethod") + " " + input.get("resource");
+        RequestHandler<Map<String, Object>, Map<String, Object>> handler = ROUTES.get(route);
+        if (handler == null) {
+            return response(404, "{\"error\":\"No route for " + route + "\"}");
+        }
+        return handler.handleRequest(input, context);
+    }
+
+    private Map<String, Object> response(int statusCode, String body) {
+        return Map.of(
+            "statusCode", statusCode,
+            "headers", Map.of("Content-Type", "application/json"),
+            "body", body
+        );
+    }
+}
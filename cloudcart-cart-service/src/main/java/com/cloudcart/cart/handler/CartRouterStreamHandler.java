@@ -0,0 +1,11 @@
+package com.cloudcart.cart.handler;
+
+import com.cloudcart.common.api.StreamingApiHandler;
+
+/** {@link CartRouterHandler} behind the streaming event reader and response writer. */
+public class CartRouterStreamHandler extends StreamingApiHandler {
+
+    public CartRouterStreamHandler() {
+        super(new CartRouterHandler());
+    }
+}
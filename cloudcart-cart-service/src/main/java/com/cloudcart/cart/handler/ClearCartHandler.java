@@ -3,13 +3,19 @@ package com.cloudcart.cart.handler;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.cloudcart.cart.repository.CartRepository;
+import com.cloudcart.common.crac.Priming;
+import org.crac.Resource;
 
 import java.util.Map;
 
-public class ClearCartHandler implements RequestHandler<Map<String, Object>, Map<String, Object>> {
+public class ClearCartHandler implements RequestHandler<Map<String, Object>, Map<String, Object>>, Resource {
 
     private static final CartRepository REPOSITORY = new CartRepository();
 
+    public ClearCartHandler() {
+        Priming.register(this);
+    }
+
     @Override
     public Map<String, Object> handleRequest(Map<String, Object> input, Context context) {
         try {
@@ -41,4 +47,21 @@ public class ClearCartHandler implements RequestHandler<Map<String, Object>, Map
             "body", body
         );
     }
+
+    @Override
+    public void beforeCheckpoint(org.crac.Context<? extends Resource> context) {
+        dryRun();
+    }
+
+    @Override
+    public void afterRestore(org.crac.Context<? extends Resource> context) {
+        dryRun();
+    }
+
+    // Read-only call that warms the SDK client and its connection
+    private void dryRun() {
+        Priming.run("dry-run", () -> {
+            REPOSITORY.getCart(Priming.DRY_RUN_ID);
+        });
+    }
 }
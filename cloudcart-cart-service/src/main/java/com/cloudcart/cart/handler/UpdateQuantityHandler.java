@@ -3,15 +3,21 @@ package com.cloudcart.cart.handler;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.cloudcart.cart.repository.CartRepository;
+import com.cloudcart.common.crac.Priming;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.crac.Resource;
 
 import java.util.Map;
 
-public class UpdateQuantityHandler implements RequestHandler<Map<String, Object>, Map<String, Object>> {
+public class UpdateQuantityHandler implements RequestHandler<Map<String, Object>, Map<String, Object>>, Resource {
 
     private static final CartRepository REPOSITORY = new CartRepository();
     private static final ObjectMapper MAPPER = new ObjectMapper();
 
+    public UpdateQuantityHandler() {
+        Priming.register(this);
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     public Map<String, Object> handleRequest(Map<String, Object> input, Context context) {
@@ -47,4 +53,22 @@ public class UpdateQuantityHandler implements RequestHandler<Map<String, Object>
             "body", body
         );
     }
+
+    @Override
+    public void beforeCheckpoint(org.crac.Context<? extends Resource> context) {
+        Priming.run("serialization", () -> Priming.roundTrip(MAPPER, Map.of("primed", true)));
+        dryRun();
+    }
+
+    @Override
+    public void afterRestore(org.crac.Context<? extends Resource> context) {
+        dryRun();
+    }
+
+    // Read-only call that warms the SDK client and its connection
+    private void dryRun() {
+        Priming.run("dry-run", () -> {
+            REPOSITORY.getCart(Priming.DRY_RUN_ID);
+        });
+    }
 }
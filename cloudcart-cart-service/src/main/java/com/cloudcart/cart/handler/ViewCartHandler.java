@@ -4,16 +4,22 @@ import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.cloudcart.cart.model.CartItem;
 import com.cloudcart.cart.repository.CartRepository;
+import com.cloudcart.common.crac.Priming;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.crac.Resource;
 
 import java.util.List;
 import java.util.Map;
 
-public class ViewCartHandler implements RequestHandler<Map<String, Object>, Map<String, Object>> {
+public class ViewCartHandler implements RequestHandler<Map<String, Object>, Map<String, Object>>, Resource {
 
     private final ObjectMapper mapper = new ObjectMapper();
     private final CartRepository repository = new CartRepository();
 
+    public ViewCartHandler() {
+        Priming.register(this);
+    }
+
     @Override
     public Map<String, Object> handleRequest(Map<String, Object> input, Context context) {
         try {
@@ -34,4 +40,22 @@ public class ViewCartHandler implements RequestHandler<Map<String, Object>, Map<
             "body", body
         );
     }
+
+    @Override
+    public void beforeCheckpoint(org.crac.Context<? extends Resource> context) {
+        Priming.run("serialization", () -> Priming.roundTrip(mapper, new CartItem()));
+        dryRun();
+    }
+
+    @Override
+    public void afterRestore(org.crac.Context<? extends Resource> context) {
+        dryRun();
+    }
+
+    // Read-only call that warms the SDK client and its connection
+    private void dryRun() {
+        Priming.run("dry-run", () -> {
+            repository.getCart(Priming.DRY_RUN_ID);
+        });
+    }
 }
@@ -0,0 +1,11 @@
+package com.cloudcart.cart.handler;
+
+import com.cloudcart.common.api.StreamingApiHandler;
+
+/** Streaming entry point for GET /cart/{userId}. */
+public class ViewCartStreamHandler extends StreamingApiHandler {
+
+    public ViewCartStreamHandler() {
+        super(new ViewCartHandler());
+    }
+}
@@ -1,10 +1,9 @@
 package com.cloudcart.cart.repository;
 
 import com.cloudcart.cart.model.CartItem;
+import com.cloudcart.common.aws.AwsClients;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
-import software.amazon.awssdk.services.dynamodb.DynamoDbClientBuilder;
 import software.amazon.awssdk.services.dynamodb.model.*;
-import java.net.URI;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -14,12 +13,7 @@ public class CartRepository {
     private final String tableName = System.getenv("CART_TABLE");
 
     public CartRepository() {
-        DynamoDbClientBuilder builder = DynamoDbClient.builder();
-        String endpointUrl = System.getenv("AWS_ENDPOINT_URL");
-        if (endpointUrl != null && !endpointUrl.isEmpty()) {
-            builder.endpointOverride(URI.create(endpointUrl));
-        }
-        this.dynamoDbClient = builder.build();
+        this.dynamoDbClient = AwsClients.dynamoDb();
     }
 
     public void addItem(CartItem item) {
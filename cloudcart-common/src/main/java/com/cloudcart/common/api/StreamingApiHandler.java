@@ -0,0 +1,127 @@
+package com.cloudcart.common.api;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.RequestStreamHandler;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@link RequestStreamHandler} front for an API Gateway proxy handler.
+ *
+ * Instead of letting the runtime bind the whole proxy event into nested maps, it
+ * reads the event with Jackson's streaming parser. It keeps only the fields the
+ * handlers read: httpMethod, resource, path, body, pathParameters,
+ * queryStringParameters, and the headers named at construction (always
+ * x-correlation-id). It skips requestContext, multiValue* and the remaining
+ * headers without building them. Kept header names are lower-cased. The
+ * delegate's {statusCode, headers, body} result is written straight to the
+ * output stream with a JsonGenerator.
+ */
+public class StreamingApiHandler implements RequestStreamHandler {
+
+    private static final JsonFactory JSON = new JsonFactory()
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+    private final RequestHandler<Map<String, Object>, Map<String, Object>> delegate;
+    private final Set<String> headers = new HashSet<>();
+
+    protected StreamingApiHandler(RequestHandler<Map<String, Object>, Map<String, Object>> delegate,
+                                  String... headerNames) {
+        this.delegate = delegate;
+        headers.add("x-correlation-id");
+        for (String name : headerNames) {
+            headers.add(name.toLowerCase());
+        }
+    }
+
+    @Override
+    public void handleRequest(InputStream input, OutputStream output, Context context) throws IOException {
+        Map<String, Object> response = delegate.handleRequest(readEvent(input), context);
+        try (JsonGenerator generator = JSON.createGenerator(output)) {
+            writeValue(generator, response);
+        }
+    }
+
+    private Map<String, Object> readEvent(InputStream input) throws IOException {
+        Map<String, Object> event = new HashMap<>();
+        try (JsonParser parser = JSON.createParser(input)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("API Gateway event must be a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken token = parser.nextToken();
+                switch (field) {
+                    case "httpMethod", "resource", "path", "body" ->
+                            event.put(field, token == JsonToken.VALUE_NULL ? null : parser.getText());
+                    case "pathParameters", "queryStringParameters" -> event.put(field, readStrings(parser, null));
+                    case "headers" -> event.put(field, readStrings(parser, headers));
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+        return event;
+    }
+
+    // A flat object of string values; with a filter, only those (lower-cased) keys are kept
+    private static Map<String, String> readStrings(JsonParser parser, Set<String> keep) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return null;
+        }
+        Map<String, String> values = new HashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            JsonToken token = parser.nextToken();
+            if (keep != null) {
+                name = name.toLowerCase();
+                if (!keep.contains(name)) {
+                    parser.skipChildren();
+                    continue;
+                }
+            }
+            values.put(name, token == JsonToken.VALUE_NULL ? null : parser.getText());
+        }
+        return values;
+    }
+
+    private static void writeValue(JsonGenerator generator, Object value) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else if (value instanceof String s) {
+            generator.writeString(s);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short) {
+            generator.writeNumber(((Number) value).longValue());
+        } else if (value instanceof Number n) {
+            generator.writeNumber(n.doubleValue());
+        } else if (value instanceof Boolean b) {
+            generator.writeBoolean(b);
+        } else if (value instanceof Map<?, ?> map) {
+            generator.writeStartObject();
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                generator.writeFieldName(String.valueOf(entry.getKey()));
+                writeValue(generator, entry.getValue());
+            }
+            generator.writeEndObject();
+        } else if (value instanceof Iterable<?> items) {
+            generator.writeStartArray();
+            for (Object item : items) {
+                writeValue(generator, item);
+            }
+            generator.writeEndArray();
+        } else {
+            generator.writeString(value.toString());
+        }
+    }
+}
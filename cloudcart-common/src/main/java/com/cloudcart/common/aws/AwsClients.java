@@ -0,0 +1,137 @@
+package com.cloudcart.common.aws;
+
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.ContainerCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.EnvironmentVariableCredentialsProvider;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.core.retry.RetryPolicy;
+import software.amazon.awssdk.http.SdkHttpClient;
+import software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClientBuilder;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.SqsClientBuilder;
+
+import java.net.URI;
+import java.time.Duration;
+
+/**
+ * One shared, lazily built SDK client per service and container.
+ *
+ * Clients use the UrlConnection HTTP client, the region from AWS_REGION and the
+ * credentials Lambda provides (environment variables, or the container endpoint
+ * under SnapStart). Outside Lambda (cloudcart-server on ECS, EC2 or a developer
+ * machine) credentials come from the SDK's default chain instead. That keeps the SDK from loading Apache or Netty and from
+ * walking its region and credentials discovery chains on cold start. Each client
+ * is built on first use through a holder class, so a service that never touches
+ * SQS never pays for it.
+ *
+ * Environment: AWS_ENDPOINT_URL (LocalStack override) and AWS_MAX_RETRIES
+ * (SDK default when unset).
+ */
+public final class AwsClients {
+
+    private static volatile SqsClient sqsOverride;
+
+    private AwsClients() {
+    }
+
+    /**
+     * Replaces the SQS client every later {@link #sqs()} call returns, e.g. with an
+     * in-memory stand-in. Must run before the first call: handlers keep the
+     * client they got in a static field.
+     */
+    public static void overrideSqs(SqsClient client) {
+        sqsOverride = client;
+    }
+
+    public static DynamoDbClient dynamoDb() {
+        return DynamoDb.CLIENT;
+    }
+
+    public static SqsClient sqs() {
+        return Sqs.CLIENT;
+    }
+
+    private static final class DynamoDb {
+        static final DynamoDbClient CLIENT = build();
+
+        private static DynamoDbClient build() {
+            DynamoDbClientBuilder builder = DynamoDbClient.builder()
+                    .httpClient(Shared.HTTP_CLIENT)
+                    .region(Shared.REGION)
+                    .credentialsProvider(Shared.CREDENTIALS)
+                    .overrideConfiguration(Shared.OVERRIDE_CONFIG);
+            if (Shared.ENDPOINT != null) builder.endpointOverride(Shared.ENDPOINT);
+            return builder.build();
+        }
+    }
+
+    private static final class Sqs {
+        static final SqsClient CLIENT = sqsOverride != null ? sqsOverride : build();
+
+        private static SqsClient build() {
+            SqsClientBuilder builder = SqsClient.builder()
+                    .httpClient(Shared.HTTP_CLIENT)
+                    .region(Shared.REGION)
+                    .credentialsProvider(Shared.CREDENTIALS)
+                    .overrideConfiguration(Shared.OVERRIDE_CONFIG);
+            if (Shared.ENDPOINT != null) builder.endpointOverride(Shared.ENDPOINT);
+            return builder.build();
+        }
+    }
+
+    private static final class Shared {
+        static final Region REGION = region();
+        static final AwsCredentialsProvider CREDENTIALS = credentials();
+        static final URI ENDPOINT = endpoint();
+        static final ClientOverrideConfiguration OVERRIDE_CONFIG = overrideConfig();
+        static final SdkHttpClient HTTP_CLIENT = httpClient();
+
+        private static Region region() {
+            String region = System.getenv("AWS_REGION");
+            return Region.of(region != null && !region.isEmpty() ? region : "us-east-1");
+        }
+
+        // SnapStart-restored functions get credentials from the container endpoint
+        // instead of the AWS_ACCESS_KEY_ID/... environment variables. Anywhere else
+        // the full chain applies: ECS task roles (RELATIVE_URI), instance profiles,
+        // ~/.aws profiles.
+        private static AwsCredentialsProvider credentials() {
+            if (System.getenv("AWS_LAMBDA_FUNCTION_NAME") == null) {
+                return DefaultCredentialsProvider.create();
+            }
+            return System.getenv("AWS_CONTAINER_CREDENTIALS_FULL_URI") != null
+                    ? ContainerCredentialsProvider.builder().build()
+                    : EnvironmentVariableCredentialsProvider.create();
+        }
+
+        private static URI endpoint() {
+            String endpointUrl = System.getenv("AWS_ENDPOINT_URL");
+            return endpointUrl != null && !endpointUrl.isEmpty() ? URI.create(endpointUrl) : null;
+        }
+
+        private static ClientOverrideConfiguration overrideConfig() {
+            ClientOverrideConfiguration.Builder builder = ClientOverrideConfiguration.builder();
+            String retries = System.getenv("AWS_MAX_RETRIES");
+            if (retries != null && !retries.isEmpty()) {
+                builder.retryPolicy(RetryPolicy.builder().numRetries(Integer.parseInt(retries)).build());
+            }
+            return builder.build();
+        }
+
+        private static SdkHttpClient httpClient() {
+            // HttpURLConnection pools keep-alive connections per host; the JDK default
+            // of 5 idle connections is too few for the concurrent fan-out in order placement
+            if (System.getProperty("http.maxConnections") == null) {
+                System.setProperty("http.maxConnections", "50");
+            }
+            return UrlConnectionHttpClient.builder()
+                    .connectionTimeout(Duration.ofSeconds(2))
+                    .socketTimeout(Duration.ofSeconds(10))
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.cloudcart.common.crac;
+
+import com.cloudcart.common.util.JsonLogger;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.crac.Core;
+import org.crac.Resource;
+
+import java.util.Map;
+
+/**
+ * Helpers for SnapStart / CRaC priming. Handlers register themselves as a
+ * {@link Resource}. Before the snapshot they run their JSON round-trips and a
+ * read-only "dry-run" call, so class loading, Jackson serializer construction,
+ * request signing and the TLS handshake are captured in the snapshot. After a
+ * restore they repeat the dry run, replacing the keep-alive connections the
+ * snapshot froze.
+ *
+ * Set CRAC_PRIMING=false to register nothing, e.g. to measure an unprimed snapshot.
+ */
+public final class Priming {
+
+    /** Key used for dry-run reads; no real item uses it. */
+    public static final String DRY_RUN_ID = "__priming__";
+
+    private static final boolean ENABLED = !"false".equalsIgnoreCase(System.getenv("CRAC_PRIMING"));
+
+    @FunctionalInterface
+    public interface Step {
+        void run() throws Exception;
+    }
+
+    private Priming() {
+    }
+
+    // The runtime holds the handler instance for the container's lifetime, which
+    // keeps it reachable from the global context
+    public static void register(Resource handler) {
+        if (ENABLED) Core.getGlobalContext().register(handler);
+    }
+
+    /** Runs one priming step; failures are logged and swallowed so they never block a checkpoint or restore. */
+    public static void run(String step, Step action) {
+        try {
+            action.run();
+        } catch (Exception e) {
+            new JsonLogger("priming", null).error("Priming step failed",
+                    Map.of("step", step, "error", String.valueOf(e.getMessage())));
+        }
+    }
+
+    /** Serializes each sample and reads it back as its own type and as a Map (the shape request bodies are parsed into). */
+    public static void roundTrip(ObjectMapper mapper, Object... samples) throws Exception {
+        for (Object sample : samples) {
+            String json = mapper.writeValueAsString(sample);
+            if (!(sample instanceof Map)) {
+                mapper.readerFor(sample.getClass())
+                        .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                        .readValue(json);
+            }
+            mapper.readValue(json, Map.class);
+        }
+    }
+}
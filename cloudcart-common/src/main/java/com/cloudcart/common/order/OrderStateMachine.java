@@ -0,0 +1,240 @@
+package com.cloudcart.common.order;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchExecuteStatementRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchStatementError;
+import software.amazon.awssdk.services.dynamodb.model.BatchStatementErrorCodeEnum;
+import software.amazon.awssdk.services.dynamodb.model.BatchStatementRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchStatementResponse;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.ReturnValuesOnConditionCheckFailure;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Status transitions of an order item in ORDERS_TABLE, shared by the payment and
+ * shipment consumers.
+ *
+ * Legal transitions: PENDING → PAID | FAILED, and PAID → SHIPPED. Each one is a
+ * conditional write on the current status. It also stamps the time of the
+ * transition as {@code <status>At}, i.e. paidAt, failedAt or shippedAt. When
+ * the condition fails, the write returns the item as it was
+ * (ReturnValuesOnConditionCheckFailure=ALL_OLD). The caller therefore learns
+ * the conflicting status, or that the order does not exist, without a second
+ * read.
+ *
+ * {@link #applyAll} runs a whole SQS batch as PartiQL BatchExecuteStatement
+ * calls of up to 25 statements. Unlike TransactWriteItems, each order succeeds
+ * or fails on its own, which is what partial batch failures need.
+ */
+public class OrderStateMachine {
+
+    public static final String PENDING = "PENDING";
+    public static final String PAID = "PAID";
+    public static final String FAILED = "FAILED";
+    public static final String SHIPPED = "SHIPPED";
+
+    private static final Map<String, Set<String>> LEGAL = Map.of(
+            PENDING, Set.of(PAID, FAILED),
+            PAID, Set.of(SHIPPED));
+    private static final int MAX_STATEMENTS = 25;
+
+    private final DynamoDbClient dynamoDbClient;
+    private final String tableName;
+
+    public OrderStateMachine(DynamoDbClient dynamoDbClient, String tableName) {
+        this.dynamoDbClient = dynamoDbClient;
+        this.tableName = tableName;
+    }
+
+    /** Applies one transition with a single UpdateItem. */
+    public Outcome apply(Transition transition) {
+        Map<String, String> names = new HashMap<>();
+        Map<String, AttributeValue> values = new HashMap<>();
+        StringBuilder update = new StringBuilder("SET #s = :to");
+        names.put("#s", "status");
+        values.put(":to", AttributeValue.fromS(transition.to));
+        values.put(":from", AttributeValue.fromS(transition.from));
+        int i = 0;
+        for (Map.Entry<String, AttributeValue> attribute : transition.attributes.entrySet()) {
+            update.append(", #a").append(i).append(" = :a").append(i);
+            names.put("#a" + i, attribute.getKey());
+            values.put(":a" + i, attribute.getValue());
+            i++;
+        }
+        try {
+            dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                    .tableName(tableName)
+                    .key(Map.of("orderId", AttributeValue.fromS(transition.orderId)))
+                    .updateExpression(update.toString())
+                    .conditionExpression("#s = :from")
+                    .expressionAttributeNames(names)
+                    .expressionAttributeValues(values)
+                    .returnValuesOnConditionCheckFailure(ReturnValuesOnConditionCheckFailure.ALL_OLD)
+                    .build());
+            return Outcome.APPLIED;
+        } catch (ConditionalCheckFailedException e) {
+            return Outcome.conflict(e.item());
+        }
+    }
+
+    /**
+     * Applies every transition and returns their outcomes in the same order.
+     * Statement-level errors (throttling, internal errors) and a failure of a
+     * whole call come back as failed outcomes for the statements concerned; the
+     * outcomes of calls that already went through are kept, so a caller never
+     * retries a transition that was applied. Two transitions of the same order go
+     * into separate calls, the second seeing the first's result.
+     */
+    public List<Outcome> applyAll(List<Transition> transitions) {
+        Outcome[] outcomes = new Outcome[transitions.size()];
+        List<Integer> pending = new ArrayList<>(transitions.size());
+        for (int i = 0; i < transitions.size(); i++) pending.add(i);
+
+        while (!pending.isEmpty()) {
+            List<Integer> chunk = new ArrayList<>(MAX_STATEMENTS);
+            List<Integer> deferred = new ArrayList<>();
+            Set<String> orderIds = new HashSet<>();
+            for (int index : pending) {
+                if (chunk.size() < MAX_STATEMENTS && orderIds.add(transitions.get(index).orderId)) {
+                    chunk.add(index);
+                } else {
+                    deferred.add(index);
+                }
+            }
+
+            List<BatchStatementRequest> statements = new ArrayList<>(chunk.size());
+            for (int index : chunk) {
+                statements.add(transitions.get(index).statement(tableName));
+            }
+            List<BatchStatementResponse> responses;
+            try {
+                responses = dynamoDbClient.batchExecuteStatement(
+                        BatchExecuteStatementRequest.builder().statements(statements).build()).responses();
+            } catch (RuntimeException e) {
+                for (int index : chunk) {
+                    outcomes[index] = Outcome.error(e.getClass().getSimpleName() + ": " + e.getMessage());
+                }
+                pending = deferred;
+                continue;
+            }
+            for (int j = 0; j < chunk.size(); j++) {
+                BatchStatementError error = responses.get(j).error();
+                if (error == null) {
+                    outcomes[chunk.get(j)] = Outcome.APPLIED;
+                } else if (error.code() == BatchStatementErrorCodeEnum.CONDITIONAL_CHECK_FAILED) {
+                    outcomes[chunk.get(j)] = Outcome.conflict(error.item());
+                } else {
+                    outcomes[chunk.get(j)] = Outcome.error(error.codeAsString() + ": " + error.message());
+                }
+            }
+            pending = deferred;
+        }
+        return List.of(outcomes);
+    }
+
+    /** One order's move from one status to another, plus any attributes to set with it. */
+    public static final class Transition {
+        private final String orderId;
+        private final String from;
+        private final String to;
+        private final Map<String, AttributeValue> attributes = new LinkedHashMap<>();
+
+        public Transition(String orderId, String from, String to, Instant at) {
+            // A missing key would fail the whole batch call, not just this statement
+            if (orderId == null || orderId.isBlank()) {
+                throw new IllegalArgumentException("Missing orderId");
+            }
+            if (!LEGAL.getOrDefault(from, Set.of()).contains(to)) {
+                throw new IllegalArgumentException("Illegal order transition " + from + " → " + to);
+            }
+            this.orderId = orderId;
+            this.from = from;
+            this.to = to;
+            attributes.put(to.toLowerCase() + "At", AttributeValue.fromS(at.toString()));
+        }
+
+        public Transition set(String attribute, String value) {
+            attributes.put(attribute, AttributeValue.fromS(value));
+            return this;
+        }
+
+        public String getOrderId() { return orderId; }
+
+        public String getTo() { return to; }
+
+        // UPDATE "table" SET "status" = ? SET "paidAt" = ? ... WHERE "orderId" = ? AND "status" = ?
+        BatchStatementRequest statement(String tableName) {
+            StringBuilder sql = new StringBuilder("UPDATE \"").append(tableName).append("\" SET \"status\" = ?");
+            List<AttributeValue> parameters = new ArrayList<>(attributes.size() + 3);
+            parameters.add(AttributeValue.fromS(to));
+            for (Map.Entry<String, AttributeValue> attribute : attributes.entrySet()) {
+                sql.append(" SET \"").append(attribute.getKey()).append("\" = ?");
+                parameters.add(attribute.getValue());
+            }
+            sql.append(" WHERE \"orderId\" = ? AND \"status\" = ?");
+            parameters.add(AttributeValue.fromS(orderId));
+            parameters.add(AttributeValue.fromS(from));
+            return BatchStatementRequest.builder()
+                    .statement(sql.toString())
+                    .parameters(parameters)
+                    .returnValuesOnConditionCheckFailure(ReturnValuesOnConditionCheckFailure.ALL_OLD)
+                    .build();
+        }
+    }
+
+    /**
+     * Result of a transition: applied, refused because the order was not in the
+     * expected status (with the item as it was, empty if there is no such order),
+     * or failed for another reason.
+     */
+    public static final class Outcome {
+        static final Outcome APPLIED = new Outcome(true, Map.of(), null);
+
+        private final boolean applied;
+        private final Map<String, AttributeValue> current;
+        private final String error;
+
+        private Outcome(boolean applied, Map<String, AttributeValue> current, String error) {
+            this.applied = applied;
+            this.current = current;
+            this.error = error;
+        }
+
+        static Outcome conflict(Map<String, AttributeValue> item) {
+            return new Outcome(false, item != null ? item : Map.of(), null);
+        }
+
+        static Outcome error(String error) {
+            return new Outcome(false, Map.of(), error);
+        }
+
+        public boolean isApplied() { return applied; }
+
+        /** The write itself failed; the order's state is unknown and the transition should be retried. */
+        public boolean isFailed() { return error != null; }
+
+        public String getError() { return error; }
+
+        /** For a refused transition: whether the order exists at all. */
+        public boolean orderExists() { return !current.isEmpty(); }
+
+        /** For a refused transition: the order's status at the time. */
+        public String currentStatus() { return currentValue("status"); }
+
+        /** For a refused transition: a string attribute of the order as it was, or null. */
+        public String currentValue(String attribute) {
+            AttributeValue value = current.get(attribute);
+            return value != null ? value.s() : null;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.cloudcart.common.stock;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResponse;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResultEntry;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Queues stock compensations on STOCK_RELEASE_QUEUE_URL for the catalog's
+ * ReleaseStockHandler, instead of calling PATCH /products/{id}/stock inline.
+ * Each message hands back one product of one order:
+ * {"releaseId":"...","orderId":"...","correlationId":"...","productId":"p1","quantity":2,"reason":"PAYMENT_FAILED"}
+ *
+ * releaseId is unique per release and stays the same when the message is sent
+ * again, so the catalog applies each release once however often it arrives.
+ *
+ * One product per message, so a product whose update fails on the catalog side
+ * is retried without re-applying the order's other products. orderId is null for
+ * a rollback before the order was saved.
+ */
+public class StockReleasePublisher {
+
+    public static final String ORDER_ROLLBACK = "ORDER_ROLLBACK";
+    public static final String PAYMENT_FAILED = "PAYMENT_FAILED";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final int SQS_BATCH_MAX = 10;
+    private static final int MAX_SEND_ATTEMPTS = 3;
+
+    private final SqsClient sqsClient;
+    private final String queueUrl;
+
+    public StockReleasePublisher(SqsClient sqsClient, String queueUrl) {
+        this.sqsClient = sqsClient;
+        this.queueUrl = queueUrl;
+    }
+
+    /**
+     * Queues a release per productId → quantity entry, up to 10 per
+     * SendMessageBatch call. When a call throws, or SQS fails entries on its
+     * own side, those entries are sent again with the same bodies; the catalog skips a release it
+     * has already applied, so a resend is harmless.
+     *
+     * The result separates what SQS explicitly rejected, which is safe to release
+     * some other way, from what is uncertain: every call for it threw, so SQS may
+     * still have queued it.
+     */
+    public Result publish(String orderId, String correlationId, String reason, Map<String, Integer> quantities) {
+        Result result = new Result();
+        List<Map.Entry<String, Integer>> lines = new ArrayList<>(quantities.entrySet());
+        for (int start = 0; start < lines.size(); start += SQS_BATCH_MAX) {
+            List<Map.Entry<String, Integer>> group = lines.subList(start, Math.min(start + SQS_BATCH_MAX, lines.size()));
+            // Entry ids only need to be unique within the call, so use the position
+            Map<String, SendMessageBatchRequestEntry> pending = new LinkedHashMap<>();
+            for (int i = 0; i < group.size(); i++) {
+                Map.Entry<String, Integer> line = group.get(i);
+                Map<String, Object> body = new LinkedHashMap<>();
+                body.put("releaseId", UUID.randomUUID().toString());
+                body.put("orderId", orderId);
+                body.put("correlationId", correlationId);
+                body.put("productId", line.getKey());
+                body.put("quantity", line.getValue());
+                body.put("reason", reason);
+                try {
+                    pending.put(String.valueOf(i), SendMessageBatchRequestEntry.builder()
+                            .id(String.valueOf(i))
+                            .messageBody(MAPPER.writeValueAsString(body))
+                            .build());
+                } catch (Exception e) {
+                    result.rejected.put(line.getKey(), line.getValue());
+                }
+            }
+            send(group, pending, result);
+        }
+        return result;
+    }
+
+    private void send(List<Map.Entry<String, Integer>> group, Map<String, SendMessageBatchRequestEntry> pending,
+                      Result result) {
+        boolean threw = false;
+        long backoffMillis = 100;
+        for (int attempt = 1; attempt <= MAX_SEND_ATTEMPTS && !pending.isEmpty(); attempt++) {
+            if (attempt > 1) {
+                try {
+                    Thread.sleep(backoffMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                backoffMillis *= 2;
+            }
+            try {
+                SendMessageBatchResponse resp = sqsClient.sendMessageBatch(SendMessageBatchRequest.builder()
+                        .queueUrl(queueUrl)
+                        .entries(new ArrayList<>(pending.values()))
+                        .build());
+                threw = false;
+                for (SendMessageBatchResultEntry sent : resp.successful()) pending.remove(sent.id());
+                for (BatchResultErrorEntry error : resp.failed()) {
+                    // A sender fault will fail the same way again
+                    if (Boolean.TRUE.equals(error.senderFault())) {
+                        pending.remove(error.id());
+                        Map.Entry<String, Integer> line = group.get(Integer.parseInt(error.id()));
+                        result.rejected.put(line.getKey(), line.getValue());
+                    }
+                }
+            } catch (Exception e) {
+                threw = true;
+            }
+        }
+        for (String id : pending.keySet()) {
+            Map.Entry<String, Integer> line = group.get(Integer.parseInt(id));
+            (threw ? result.uncertain : result.rejected).put(line.getKey(), line.getValue());
+        }
+    }
+
+    /** What {@link #publish} could not queue; both maps are productId → quantity. */
+    public static final class Result {
+        private final Map<String, Integer> rejected = new LinkedHashMap<>();
+        private final Map<String, Integer> uncertain = new LinkedHashMap<>();
+
+        /** Releases SQS did not take; releasing them another way cannot double them. */
+        public Map<String, Integer> rejected() { return rejected; }
+
+        /** Releases whose every send threw; SQS may have queued them anyway. */
+        public Map<String, Integer> uncertain() { return uncertain; }
+
+        /** Everything not known to be queued; empty when every release was queued. */
+        public Map<String, Integer> unsent() {
+            Map<String, Integer> unsent = new LinkedHashMap<>(rejected);
+            unsent.putAll(uncertain);
+            return unsent;
+        }
+    }
+}
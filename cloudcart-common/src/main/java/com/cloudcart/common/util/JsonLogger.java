@@ -0,0 +1,307 @@
+package com.cloudcart.common.util;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * One JSON object per line on stdout: timestamp, level, service, correlationId,
+ * message, then the extra fields.
+ *
+ * Each thread has its own JsonGenerator, which writes into a reusable byte
+ * buffer, so a line costs no intermediate map or String. Level and sampling are
+ * checked before any field is written:
+ * - LOG_LEVEL: INFO (default) or ERROR
+ * - LOG_SAMPLE_RATE: share of loggers whose {@link #sampled()} INFO lines are
+ *   kept, between 0 and 1 (default 1). The decision is made once per logger,
+ *   i.e. per correlation ID, so a sampled request keeps all of its lines.
+ *
+ * Lines are written to stdout as they are logged, unless the thread called
+ * {@link #buffer()}. Then they are held until {@link #flush()} and go out in
+ * one write. An ERROR line, or a buffer past 16 KB, flushes at once, so a
+ * timed-out invocation still leaves its errors behind.
+ */
+public class JsonLogger {
+
+    private static final JsonFactory JSON = new JsonFactory()
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+            .disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+    private static final boolean INFO_ENABLED = !"ERROR".equalsIgnoreCase(System.getenv("LOG_LEVEL"));
+    private static final double SAMPLE_RATE = System.getenv("LOG_SAMPLE_RATE") != null
+            ? Double.parseDouble(System.getenv("LOG_SAMPLE_RATE")) : 1.0;
+    private static final int MAX_BUFFERED_BYTES = 16 * 1024;
+    private static final ThreadLocal<LineWriter> WRITER = ThreadLocal.withInitial(LineWriter::new);
+
+    private final String service;
+    private final String correlationId;
+    private final boolean infoEnabled;
+    private JsonLogger sampled;
+
+    public JsonLogger(String service, String correlationId) {
+        this(service, (correlationId != null && !correlationId.isBlank())
+                ? correlationId : UUID.randomUUID().toString(), INFO_ENABLED);
+    }
+
+    private JsonLogger(String service, String correlationId, boolean infoEnabled) {
+        this.service = service;
+        this.correlationId = correlationId;
+        this.infoEnabled = infoEnabled;
+    }
+
+    public static JsonLogger fromHeaders(String service, Map<String, Object> headers) {
+        String corrId = null;
+        if (headers != null) {
+            Object h = headers.get("X-Correlation-Id");
+            if (h == null) h = headers.get("x-correlation-id");
+            if (h != null) corrId = h.toString();
+        }
+        return new JsonLogger(service, corrId);
+    }
+
+    /** Holds this thread's lines until {@link #flush()}; call at the start of an invocation. */
+    public static void buffer() {
+        WRITER.get().buffering = true;
+    }
+
+    /** Writes this thread's held lines in one go and stops holding new ones. */
+    public static void flush() {
+        LineWriter writer = WRITER.get();
+        writer.buffering = false;
+        writer.drain();
+    }
+
+    /**
+     * This logger, or a copy whose INFO lines are dropped, depending on
+     * LOG_SAMPLE_RATE. Use it for per-record and other high-volume lines.
+     */
+    public JsonLogger sampled() {
+        if (sampled == null) {
+            boolean keep = SAMPLE_RATE >= 1 || ThreadLocalRandom.current().nextDouble() < SAMPLE_RATE;
+            sampled = keep ? this : new JsonLogger(service, correlationId, false);
+        }
+        return sampled;
+    }
+
+    public boolean isInfoEnabled() {
+        return infoEnabled;
+    }
+
+    public void info(String message, Map<String, Object> extra) {
+        if (!infoEnabled) return;
+        WRITER.get().write(this, "INFO", message, extra, null, 0);
+    }
+
+    public void info(String message) {
+        if (!infoEnabled) return;
+        WRITER.get().write(this, "INFO", message, null, null, 0);
+    }
+
+    public void info(String message, String key, Object value) {
+        if (!infoEnabled) return;
+        LineWriter writer = WRITER.get();
+        writer.write(this, "INFO", message, null, writer.fields(key, value), 2);
+    }
+
+    public void info(String message, String key1, Object value1, String key2, Object value2) {
+        if (!infoEnabled) return;
+        LineWriter writer = WRITER.get();
+        writer.write(this, "INFO", message, null, writer.fields(key1, value1, key2, value2), 4);
+    }
+
+    public void info(String message, String key1, Object value1, String key2, Object value2,
+                     String key3, Object value3) {
+        if (!infoEnabled) return;
+        LineWriter writer = WRITER.get();
+        writer.write(this, "INFO", message, null, writer.fields(key1, value1, key2, value2, key3, value3), 6);
+    }
+
+    public void info(String message, String key1, Object value1, String key2, Object value2,
+                     String key3, Object value3, String key4, Object value4) {
+        if (!infoEnabled) return;
+        LineWriter writer = WRITER.get();
+        writer.write(this, "INFO", message, null,
+                writer.fields(key1, value1, key2, value2, key3, value3, key4, value4), 8);
+    }
+
+    public void error(String message, Map<String, Object> extra) {
+        WRITER.get().write(this, "ERROR", message, extra, null, 0);
+    }
+
+    public void error(String message, String key, Object value) {
+        LineWriter writer = WRITER.get();
+        writer.write(this, "ERROR", message, null, writer.fields(key, value), 2);
+    }
+
+    public void error(String message, String key1, Object value1, String key2, Object value2) {
+        LineWriter writer = WRITER.get();
+        writer.write(this, "ERROR", message, null, writer.fields(key1, value1, key2, value2), 4);
+    }
+
+    public String getCorrelationId() {
+        return correlationId;
+    }
+
+    // Per-thread generator, output buffer and scratch space for key/value pairs
+    private static final class LineWriter {
+        private final Buffer out = new Buffer();
+        private final Object[] pairs = new Object[8];
+        private final char[] timestamp = new char[24];
+        private final JsonGenerator json;
+        private long timestampSecond = -1;
+        boolean buffering;
+
+        LineWriter() {
+            try {
+                json = JSON.createGenerator(out, JsonEncoding.UTF8);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            // Lines are separated by '\n' below, not by Jackson's root separator
+            json.setRootValueSeparator(null);
+        }
+
+        Object[] fields(String k1, Object v1) {
+            pairs[0] = k1;
+            pairs[1] = v1;
+            return pairs;
+        }
+
+        Object[] fields(String k1, Object v1, String k2, Object v2) {
+            fields(k1, v1);
+            pairs[2] = k2;
+            pairs[3] = v2;
+            return pairs;
+        }
+
+        Object[] fields(String k1, Object v1, String k2, Object v2, String k3, Object v3) {
+            fields(k1, v1, k2, v2);
+            pairs[4] = k3;
+            pairs[5] = v3;
+            return pairs;
+        }
+
+        Object[] fields(String k1, Object v1, String k2, Object v2, String k3, Object v3, String k4, Object v4) {
+            fields(k1, v1, k2, v2, k3, v3);
+            pairs[6] = k4;
+            pairs[7] = v4;
+            return pairs;
+        }
+
+        void write(JsonLogger logger, String level, String message, Map<String, Object> extra,
+                   Object[] fields, int fieldCount) {
+            int mark = out.size();
+            try {
+                json.writeStartObject();
+                json.writeFieldName("timestamp");
+                json.writeString(timestamp, 0, formatTimestamp(System.currentTimeMillis()));
+                json.writeStringField("level", level);
+                json.writeStringField("service", logger.service);
+                json.writeStringField("correlationId", logger.correlationId);
+                json.writeStringField("message", message);
+                if (extra != null) {
+                    for (Map.Entry<String, Object> entry : extra.entrySet()) {
+                        json.writeFieldName(entry.getKey());
+                        writeValue(entry.getValue());
+                    }
+                }
+                for (int i = 0; i < fieldCount; i += 2) {
+                    json.writeFieldName((String) fields[i]);
+                    writeValue(fields[i + 1]);
+                    fields[i + 1] = null;
+                }
+                json.writeEndObject();
+                json.flush();
+                out.write('\n');
+            } catch (Exception e) {
+                // Drop the partial line. Jackson cannot rewind a generator mid-object,
+                // so this thread gets a fresh writer for its next line.
+                out.truncate(mark);
+                out.writeAscii("{\"level\":\"ERROR\",\"message\":\"Failed to serialize log entry\"}\n");
+                drain();
+                WRITER.remove();
+                WRITER.get().buffering = buffering;
+                return;
+            }
+            if (!buffering || "ERROR".equals(level) || out.size() > MAX_BUFFERED_BYTES) drain();
+        }
+
+        void drain() {
+            if (out.size() == 0) return;
+            PrintStream stdout = System.out;
+            stdout.write(out.array(), 0, out.size());
+            stdout.flush();
+            out.reset();
+        }
+
+        private void writeValue(Object value) throws IOException {
+            if (value == null) {
+                json.writeNull();
+            } else if (value instanceof String s) {
+                json.writeString(s);
+            } else if (value instanceof Integer || value instanceof Long || value instanceof Short) {
+                json.writeNumber(((Number) value).longValue());
+            } else if (value instanceof Number n) {
+                json.writeNumber(n.doubleValue());
+            } else if (value instanceof Boolean b) {
+                json.writeBoolean(b);
+            } else if (value instanceof Map<?, ?> map) {
+                json.writeStartObject();
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    json.writeFieldName(String.valueOf(entry.getKey()));
+                    writeValue(entry.getValue());
+                }
+                json.writeEndObject();
+            } else if (value instanceof Iterable<?> items) {
+                json.writeStartArray();
+                for (Object item : items) writeValue(item);
+                json.writeEndArray();
+            } else {
+                json.writeString(value.toString());
+            }
+        }
+
+        // ISO-8601 with milliseconds; the date and time part is reformatted once a second
+        private int formatTimestamp(long epochMillis) {
+            long second = Math.floorDiv(epochMillis, 1000);
+            if (second != timestampSecond) {
+                String text = Instant.ofEpochSecond(second).toString();  // yyyy-MM-ddTHH:mm:ssZ
+                text.getChars(0, 19, timestamp, 0);
+                timestamp[19] = '.';
+                timestamp[23] = 'Z';
+                timestampSecond = second;
+            }
+            int millis = (int) Math.floorMod(epochMillis, 1000);
+            timestamp[20] = (char) ('0' + millis / 100);
+            timestamp[21] = (char) ('0' + millis / 10 % 10);
+            timestamp[22] = (char) ('0' + millis % 10);
+            return 24;
+        }
+    }
+
+    // ByteArrayOutputStream that exposes its array and can drop a partial line
+    private static final class Buffer extends ByteArrayOutputStream {
+        Buffer() {
+            super(4096);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+
+        void truncate(int size) {
+            count = size;
+        }
+
+        void writeAscii(String s) {
+            for (int i = 0; i < s.length(); i++) write(s.charAt(i));
+        }
+    }
+}
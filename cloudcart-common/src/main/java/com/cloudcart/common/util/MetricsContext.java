@@ -0,0 +1,170 @@
+package com.cloudcart.common.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Metrics for one invocation, written as a single EMF document by {@link #flush()}.
+ *
+ * Counters are summed. Timers and other samples are kept as a list per metric,
+ * written as an EMF value array so CloudWatch still computes percentiles. A
+ * metric is flushed early once it reaches the 100 values EMF allows. Dimensions
+ * apply to every metric in the document. Each metric is published both with and
+ * without them, so dashboards and alarms on the dimensionless metrics keep working.
+ *
+ * Safe to use from several threads; obtain one from {@link MetricsEmitter#begin()}
+ * and close it with {@link MetricsEmitter#end()}.
+ */
+public class MetricsContext {
+
+    private static final JsonFactory JSON = new JsonFactory();
+    // EMF limit on values per metric in one document
+    private static final int MAX_VALUES = 100;
+
+    private final String namespace;
+    private final Map<String, String> dimensions = new LinkedHashMap<>();
+    private final Map<String, Object> properties = new LinkedHashMap<>();
+    private final Map<String, Metric> metrics = new LinkedHashMap<>();
+
+    MetricsContext(String namespace) {
+        this.namespace = namespace;
+    }
+
+    String namespace() {
+        return namespace;
+    }
+
+    public synchronized MetricsContext dimension(String name, String value) {
+        if (value != null) dimensions.put(name, value);
+        return this;
+    }
+
+    /** A searchable, non-metric field on the document, e.g. an order id. */
+    public synchronized MetricsContext property(String name, Object value) {
+        properties.put(name, value);
+        return this;
+    }
+
+    public void count(String name) {
+        count(name, 1);
+    }
+
+    public synchronized void count(String name, double amount) {
+        metric(name, "Count").sum += amount;
+    }
+
+    public synchronized void put(String name, double value, String unit) {
+        Metric metric = metric(name, unit);
+        if (metric.size == MAX_VALUES) {
+            flush();
+            metric = metric(name, unit);
+        }
+        metric.add(value);
+    }
+
+    public void time(String name, long millis) {
+        put(name, millis, "Milliseconds");
+    }
+
+    /** Records the milliseconds elapsed since a {@link System#nanoTime()} reading. */
+    public void timeSince(String name, long startNanos) {
+        time(name, (System.nanoTime() - startNanos) / 1_000_000);
+    }
+
+    /** Writes everything recorded so far as one EMF line and starts over; dimensions and properties are kept. */
+    public synchronized void flush() {
+        if (metrics.isEmpty()) return;
+        System.out.println(render(namespace, dimensions, properties, metrics));
+        metrics.clear();
+    }
+
+    private Metric metric(String name, String unit) {
+        return metrics.computeIfAbsent(name, n -> new Metric(unit));
+    }
+
+    static String render(String namespace, Map<String, String> dimensions, Map<String, Object> properties,
+                         Map<String, Metric> metrics) {
+        StringWriter out = new StringWriter(256);
+        try (JsonGenerator json = JSON.createGenerator(out)) {
+            json.writeStartObject();
+            json.writeObjectFieldStart("_aws");
+            json.writeNumberField("Timestamp", System.currentTimeMillis());
+            json.writeArrayFieldStart("CloudWatchMetrics");
+            json.writeStartObject();
+            json.writeStringField("Namespace", namespace);
+            json.writeArrayFieldStart("Dimensions");
+            json.writeStartArray();
+            json.writeEndArray();
+            if (!dimensions.isEmpty()) {
+                json.writeStartArray();
+                for (String name : dimensions.keySet()) json.writeString(name);
+                json.writeEndArray();
+            }
+            json.writeEndArray();
+            json.writeArrayFieldStart("Metrics");
+            for (Map.Entry<String, Metric> metric : metrics.entrySet()) {
+                json.writeStartObject();
+                json.writeStringField("Name", metric.getKey());
+                json.writeStringField("Unit", metric.getValue().unit);
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+            json.writeEndArray();
+            json.writeEndObject();
+
+            for (Map.Entry<String, String> dimension : dimensions.entrySet()) {
+                json.writeStringField(dimension.getKey(), dimension.getValue());
+            }
+            for (Map.Entry<String, Object> property : properties.entrySet()) {
+                json.writeFieldName(property.getKey());
+                Object value = property.getValue();
+                if (value instanceof Number n) json.writeNumber(n.doubleValue());
+                else json.writeString(String.valueOf(value));
+            }
+            for (Map.Entry<String, Metric> metric : metrics.entrySet()) {
+                json.writeFieldName(metric.getKey());
+                metric.getValue().write(json);
+            }
+            json.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    static final class Metric {
+        final String unit;
+        double sum;
+        double[] values;
+        int size;
+
+        Metric(String unit) {
+            this.unit = unit;
+        }
+
+        void add(double value) {
+            if (values == null) values = new double[8];
+            else if (size == values.length) values = Arrays.copyOf(values, Math.min(size * 2, MAX_VALUES));
+            values[size++] = value;
+        }
+
+        // Samples as an array (one per observation); counters as their sum
+        void write(JsonGenerator json) throws IOException {
+            if (values == null) {
+                json.writeNumber(sum);
+                return;
+            }
+            json.writeStartArray();
+            for (int i = 0; i < size; i++) json.writeNumber(values[i]);
+            json.writeEndArray();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.cloudcart.common.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Emits CloudWatch metrics using Embedded Metrics Format (EMF).
+ * Lambda captures stdout to CloudWatch Logs, which auto-publishes EMF metrics.
+ * No additional SDK dependency required.
+ *
+ * Handlers call {@link #begin()} at the start of an invocation and flush the
+ * returned {@link MetricsContext} when they finish. Until then, {@link #count}
+ * and {@link #emit} on this thread are buffered into that context instead of
+ * printing one line per metric. Outside an open context, for example on an
+ * SDK callback thread, each call is still written as its own line.
+ */
+public class MetricsEmitter {
+
+    private static final ThreadLocal<MetricsContext> CURRENT = new ThreadLocal<>();
+
+    private final String namespace;
+
+    public MetricsEmitter(String namespace) {
+        this.namespace = namespace;
+    }
+
+    /** Opens a context for the current invocation on this thread; {@link MetricsContext#flush()} it when done. */
+    public MetricsContext begin() {
+        MetricsContext context = new MetricsContext(namespace);
+        CURRENT.set(context);
+        return context;
+    }
+
+    /** Flushes and detaches the context opened by {@link #begin()} on this thread, if any. */
+    public void end() {
+        MetricsContext context = CURRENT.get();
+        CURRENT.remove();
+        if (context != null) context.flush();
+    }
+
+    public void count(String metricName) {
+        count(metricName, 1);
+    }
+
+    public void count(String metricName, double amount) {
+        MetricsContext context = current();
+        if (context != null) {
+            context.count(metricName, amount);
+        } else {
+            print(metricName, amount, "Count");
+        }
+    }
+
+    public void emit(String metricName, double value, String unit) {
+        MetricsContext context = current();
+        if (context != null) {
+            context.put(metricName, value, unit);
+            return;
+        }
+        print(metricName, value, unit);
+    }
+
+    private void print(String metricName, double value, String unit) {
+        Map<String, MetricsContext.Metric> metric = new LinkedHashMap<>();
+        MetricsContext.Metric single = new MetricsContext.Metric(unit);
+        single.sum = value;
+        metric.put(metricName, single);
+        System.out.println(MetricsContext.render(namespace, Map.of(), Map.of(), metric));
+    }
+
+    // Only a context opened by an emitter of the same namespace
+    private MetricsContext current() {
+        MetricsContext context = CURRENT.get();
+        return context != null && context.namespace().equals(namespace) ? context : null;
+    }
+}
@@ -2,17 +2,23 @@ package com.cloudcart.order.handler;
 
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.cloudcart.common.crac.Priming;
 import com.cloudcart.order.model.Order;
 import com.cloudcart.order.repository.OrderRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.crac.Resource;
 
 import java.util.Map;
 
-public class GetOrderHandler implements RequestHandler<Map<String, Object>, Map<String, Object>> {
+public class GetOrderHandler implements RequestHandler<Map<String, Object>, Map<String, Object>>, Resource {
 
     private static final ObjectMapper MAPPER = new ObjectMapper();
     private static final OrderRepository REPOSITORY = new OrderRepository();
 
+    public GetOrderHandler() {
+        Priming.register(this);
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     public Map<String, Object> handleRequest(Map<String, Object> input, Context context) {
@@ -57,4 +63,22 @@ public class GetOrderHandler implements RequestHandler<Map<String, Object>, Map<
                 "body", body
         );
     }
+
+    @Override
+    public void beforeCheckpoint(org.crac.Context<? extends Resource> context) {
+        Priming.run("serialization", () -> Priming.roundTrip(MAPPER, new Order()));
+        dryRun();
+    }
+
+    @Override
+    public void afterRestore(org.crac.Context<? extends Resource> context) {
+        dryRun();
+    }
+
+    // Read-only call that warms the SDK client and its connection
+    private void dryRun() {
+        Priming.run("dry-run", () -> {
+            REPOSITORY.getOrder(Priming.DRY_RUN_ID);
+        });
+    }
 }
@@ -0,0 +1,11 @@
+package com.cloudcart.order.handler;
+
+import com.cloudcart.common.api.StreamingApiHandler;
+
+/** Streaming entry point for GET /orders/{orderId}. */
+public class GetOrderStreamHandler extends StreamingApiHandler {
+
+    public GetOrderStreamHandler() {
+        super(new GetOrderHandler());
+    }
+}
@@ -0,0 +1,11 @@
+package com.cloudcart.order.handler;
+
+import com.cloudcart.common.api.StreamingApiHandler;
+
+/** Streaming entry point for GET /orders. */
+public class ListOrdersStreamHandler extends StreamingApiHandler {
+
+    public ListOrdersStreamHandler() {
+        super(new ListOrdersHandler());
+    }
+}
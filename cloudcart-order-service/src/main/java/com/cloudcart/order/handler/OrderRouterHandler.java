@@ -0,0 +1,38 @@
+package com.cloudcart.order.handler;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+
+import java.util.Map;
+
+/**
+ * Routes POST/GET /orders and GET /orders/{orderId} inside one function
+ * (cloudcart-order-router-template.yaml). The outbox relay keeps its own
+ * function because it is triggered by the outbox table's stream, not the API.
+ */
+public class OrderRouterHandler implements RequestHandler<Map<String, Object>, Map<String, Object>> {
+
+    private static final Map<String, RequestHandler<Map<String, Object>, Map<String, Object>>> ROUTES = Map.of(
+            "POST /orders", new PlaceOrderHandler(),
+            "GET /orders", new ListOrdersHandler(),
+            "GET /orders/{orderId}", new GetOrderHandler()
+    );
+
+    @Override
+    public Map<String, Object> handleRequest(Map<String, Object> input, Context context) {
+        String route = input.get("httpMethod") + " " + input.get("resource");
+        RequestHandler<Map<String, Object>, Map<String, Object>> handler = ROUTES.get(route);
+        if (handler == null) {
+            return response(404, "{\"error\":\"No route for " + route + "\"}");
+        }
+        return handler.handleRequest(input, context);
+    }
+
+    private Map<String, Object> response(int statusCode, String body) {
+        return Map.of(
+            "statusCode", statusCode,
+            "headers", Map.of("Content-Type", "application/json"),
+            "body", body
+        );
+    }
+}
@@ -0,0 +1,11 @@
+package com.cloudcart.order.handler;
+
+import com.cloudcart.common.api.StreamingApiHandler;
+
+/** {@link OrderRouterHandler} behind the streaming reader; keeps the headers PlaceOrderHandler reads. */
+public class OrderRouterStreamHandler extends StreamingApiHandler {
+
+    public OrderRouterStreamHandler() {
+        super(new OrderRouterHandler(), "Idempotency-Key", "Prefer");
+    }
+}
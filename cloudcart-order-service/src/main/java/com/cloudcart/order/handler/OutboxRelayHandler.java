@@ -0,0 +1,173 @@
+package com.cloudcart.order.handler;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.cloudcart.common.aws.AwsClients;
+import com.cloudcart.common.crac.Priming;
+import com.cloudcart.common.util.JsonLogger;
+import com.cloudcart.common.util.MetricsEmitter;
+import com.cloudcart.order.repository.OrderRepository;
+import org.crac.Resource;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResponse;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Drains the order outbox to OrderPlacedQueue with SendMessageBatch.
+ *
+ * Two trigger modes:
+ * - DynamoDB Streams on the outbox table: each INSERT record is relayed; records
+ *   that fail to publish are returned as batchItemFailures (by SequenceNumber).
+ * - Any event without "Records" (EventBridge schedule, manual or local invoke):
+ *   scans the outbox and relays whatever is still pending.
+ *
+ * Published records are deleted from the outbox. Delivery is at-least-once; the
+ * payment consumer's conditional update makes duplicates harmless.
+ */
+public class OutboxRelayHandler implements RequestHandler<Map<String, Object>, Map<String, Object>>, Resource {
+
+    private static final OrderRepository REPOSITORY = new OrderRepository();
+    private static final MetricsEmitter METRICS = new MetricsEmitter("CloudCart/Orders");
+    private static final SqsClient SQS_CLIENT = AwsClients.sqs();
+    private static final String QUEUE_URL = System.getenv("ORDER_QUEUE_URL");
+    // SendMessageBatch accepts at most 10 entries
+    private static final int SQS_BATCH_MAX = 10;
+    private static final int POLL_LIMIT = 100;
+
+    public OutboxRelayHandler() {
+        Priming.register(this);
+    }
+
+    @Override
+    public Map<String, Object> handleRequest(Map<String, Object> input, Context context) {
+        METRICS.begin().dimension("FunctionName", context != null ? context.getFunctionName() : null);
+        JsonLogger.buffer();
+        try {
+            return relayEvents(input);
+        } finally {
+            METRICS.end();
+            JsonLogger.flush();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> relayEvents(Map<String, Object> input) {
+        JsonLogger logger = new JsonLogger("order-outbox-relay", null);
+        List<Map<String, Object>> records = (List<Map<String, Object>>) input.get("Records");
+
+        if (records == null) {
+            // Polling mode
+            Map<String, String> pending = REPOSITORY.scanOutbox(POLL_LIMIT);
+            Set<String> failed = relay(pending, logger);
+            Map<String, Object> result = new HashMap<>();
+            result.put("relayed", pending.size() - failed.size());
+            result.put("failed", failed.size());
+            return result;
+        }
+
+        // Stream mode — only INSERTs carry new events; REMOVEs are our own deletes
+        Map<String, String> pending = new LinkedHashMap<>();
+        Map<String, String> sequenceNumbers = new HashMap<>();
+        for (Map<String, Object> record : records) {
+            if (!"INSERT".equals(record.get("eventName"))) continue;
+            Map<String, Object> dynamodb = (Map<String, Object>) record.get("dynamodb");
+            Map<String, Map<String, Object>> newImage = (Map<String, Map<String, Object>>) dynamodb.get("NewImage");
+            String outboxId = (String) newImage.get("outboxId").get("S");
+            pending.put(outboxId, (String) newImage.get("payload").get("S"));
+            sequenceNumbers.put(outboxId, (String) dynamodb.get("SequenceNumber"));
+        }
+
+        List<Map<String, String>> failedItems = new ArrayList<>();
+        for (String outboxId : relay(pending, logger)) {
+            failedItems.add(Map.of("itemIdentifier", sequenceNumbers.get(outboxId)));
+        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("batchItemFailures", failedItems);
+        return response;
+    }
+
+    /**
+     * Publishes each outboxId → event JSON in SendMessageBatch groups and deletes
+     * the ones that were accepted. Returns the outboxIds that failed to publish.
+     */
+    private Set<String> relay(Map<String, String> pending, JsonLogger logger) {
+        Set<String> failed = new HashSet<>();
+        List<String> published = new ArrayList<>();
+        List<String> outboxIds = new ArrayList<>(pending.keySet());
+
+        for (int start = 0; start < outboxIds.size(); start += SQS_BATCH_MAX) {
+            List<String> group = outboxIds.subList(start, Math.min(start + SQS_BATCH_MAX, outboxIds.size()));
+            // Batch entry ids only need to be unique within the call — use the position
+            List<SendMessageBatchRequestEntry> entries = new ArrayList<>(group.size());
+            for (int i = 0; i < group.size(); i++) {
+                entries.add(SendMessageBatchRequestEntry.builder()
+                        .id(String.valueOf(i))
+                        .messageBody(pending.get(group.get(i)))
+                        .build());
+            }
+            try {
+                SendMessageBatchResponse resp = SQS_CLIENT.sendMessageBatch(SendMessageBatchRequest.builder()
+                        .queueUrl(QUEUE_URL)
+                        .entries(entries)
+                        .build());
+                Set<String> groupFailed = new HashSet<>();
+                for (BatchResultErrorEntry error : resp.failed()) {
+                    String outboxId = group.get(Integer.parseInt(error.id()));
+                    groupFailed.add(outboxId);
+                    logger.error("Failed to relay OrderPlacedEvent", Map.of(
+                            "orderId", outboxId, "code", String.valueOf(error.code())));
+                }
+                for (String outboxId : group) {
+                    if (!groupFailed.contains(outboxId)) published.add(outboxId);
+                }
+                failed.addAll(groupFailed);
+            } catch (Exception e) {
+                logger.error("SendMessageBatch failed", Map.of("error", String.valueOf(e.getMessage())));
+                failed.addAll(group);
+            }
+        }
+
+        if (!published.isEmpty()) {
+            try {
+                REPOSITORY.deleteOutbox(published);
+            } catch (Exception e) {
+                // Records will be relayed again by the next poll; consumers are idempotent
+                logger.error("Failed to delete relayed outbox records", Map.of(
+                        "count", String.valueOf(published.size()), "error", String.valueOf(e.getMessage())));
+            }
+            logger.info("Relayed OrderPlacedEvents", Map.of("count", String.valueOf(published.size())));
+            METRICS.count("OutboxRelayed", published.size());
+        }
+        if (!failed.isEmpty()) {
+            METRICS.count("OutboxRelayFailed", failed.size());
+        }
+        return failed;
+    }
+
+    @Override
+    public void beforeCheckpoint(org.crac.Context<? extends Resource> context) {
+        dryRun();
+    }
+
+    @Override
+    public void afterRestore(org.crac.Context<? extends Resource> context) {
+        dryRun();
+    }
+
+    // Read-only call that warms the SDK client and its connection
+    private void dryRun() {
+        Priming.run("dry-run", () -> {
+            REPOSITORY.getOrder(Priming.DRY_RUN_ID);
+        });
+    }
+}
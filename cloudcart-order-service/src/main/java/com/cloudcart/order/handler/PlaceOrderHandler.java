@@ -2,27 +2,25 @@ package com.cloudcart.order.handler;
 
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.cloudcart.common.aws.AwsClients;
+import com.cloudcart.common.crac.Priming;
+import com.cloudcart.common.stock.StockReleasePublisher;
+import com.cloudcart.common.util.JsonLogger;
+import com.cloudcart.common.util.MetricsContext;
+import com.cloudcart.common.util.MetricsEmitter;
+import com.cloudcart.order.model.IdempotencyRecord;
 import com.cloudcart.order.model.Order;
 import com.cloudcart.order.model.OrderItem;
 import com.cloudcart.order.model.OrderPlacedEvent;
+import com.cloudcart.order.model.PlaceOrderRequest;
+import com.cloudcart.order.repository.IdempotencyRepository;
 import com.cloudcart.order.repository.OrderRepository;
-import com.cloudcart.order.util.JsonLogger;
-import com.cloudcart.order.util.MetricsEmitter;
+import com.cloudcart.order.util.DependencyGuard;
+import com.cloudcart.order.util.StageTimings;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
-import software.amazon.awssdk.core.retry.RetryPolicy;
-import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
-import software.amazon.awssdk.services.dynamodb.DynamoDbClientBuilder;
-import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
-import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
-import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
-import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
-import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
-import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
-import software.amazon.awssdk.services.sqs.SqsClient;
-import software.amazon.awssdk.services.sqs.SqsClientBuilder;
-import software.amazon.awssdk.services.sqs.model.SendMessageRequest;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.crac.Resource;
 
 import java.net.URI;
 import java.net.http.HttpClient;
@@ -32,178 +30,215 @@ import java.net.http.HttpTimeoutException;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 
-public class PlaceOrderHandler implements RequestHandler<Map<String, Object>, Map<String, Object>> {
+public class PlaceOrderHandler implements RequestHandler<Map<String, Object>, Map<String, Object>>, Resource {
 
     private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final ObjectReader REQUEST_READER = MAPPER.readerFor(PlaceOrderRequest.class);
     private static final OrderRepository REPOSITORY = new OrderRepository();
     private static final MetricsEmitter METRICS = new MetricsEmitter("CloudCart/Orders");
-    private static final SqsClient SQS_CLIENT;
-    private static final DynamoDbClient DYNAMO_CLIENT;
+    // Breaker, adaptive concurrency limit and p99-based timeouts for product catalog calls
+    private static final DependencyGuard CATALOG = new DependencyGuard("Catalog", METRICS);
     private static final HttpClient HTTP_CLIENT = HttpClient.newBuilder()
             .connectTimeout(Duration.ofSeconds(5))
             .build();
-    private static final String QUEUE_URL = System.getenv("ORDER_QUEUE_URL");
     private static final String PRODUCTS_API_URL = System.getenv("PRODUCTS_API_URL");
     private static final String IDEMPOTENCY_TABLE = System.getenv("IDEMPOTENCY_TABLE");
+    private static final long RESERVATION_DEADLINE_MS = System.getenv("RESERVATION_DEADLINE_MS") != null
+            ? Long.parseLong(System.getenv("RESERVATION_DEADLINE_MS")) : 10_000L;
+    private static final long MAX_IDEMPOTENCY_WAIT_SECONDS = System.getenv("MAX_IDEMPOTENCY_WAIT_SECONDS") != null
+            ? Long.parseLong(System.getenv("MAX_IDEMPOTENCY_WAIT_SECONDS")) : 10L;
+    // "batch" reserves the whole order with one POST /products/stock transaction
+    // instead of one PATCH per item
+    private static final boolean BATCH_RESERVATION = "batch".equalsIgnoreCase(System.getenv("STOCK_RESERVATION_MODE"));
+    // Status reported for items a batch reservation rolled back because another item was short
+    private static final int NOT_RESERVED = 0;
+    // Slack on top of a call's own HTTP timeout before a late reservation is given up on
+    private static final long LATE_CALL_GRACE_MS = 1_000L;
+    private static final StockReleasePublisher STOCK_RELEASES = System.getenv("STOCK_RELEASE_QUEUE_URL") != null
+            ? new StockReleasePublisher(AwsClients.sqs(), System.getenv("STOCK_RELEASE_QUEUE_URL"))
+            : null;
+    private static final IdempotencyRepository IDEMPOTENCY = IDEMPOTENCY_TABLE != null
+            ? new IdempotencyRepository(AwsClients.dynamoDb(), IDEMPOTENCY_TABLE, METRICS)
+            : null;
 
-    static {
-        String endpointUrl = System.getenv("AWS_ENDPOINT_URL");
-        ClientOverrideConfiguration overrideConfig = ClientOverrideConfiguration.builder()
-                .retryPolicy(RetryPolicy.builder().numRetries(3).build())
-                .build();
-
-        SqsClientBuilder sqsBuilder = SqsClient.builder().overrideConfiguration(overrideConfig);
-        if (endpointUrl != null && !endpointUrl.isEmpty()) {
-            sqsBuilder.endpointOverride(URI.create(endpointUrl));
-        }
-        SQS_CLIENT = sqsBuilder.build();
-
-        DynamoDbClientBuilder dynamoBuilder = DynamoDbClient.builder().overrideConfiguration(overrideConfig);
-        if (endpointUrl != null && !endpointUrl.isEmpty()) {
-            dynamoBuilder.endpointOverride(URI.create(endpointUrl));
-        }
-        DYNAMO_CLIENT = dynamoBuilder.build();
+    public PlaceOrderHandler() {
+        Priming.register(this);
     }
 
     @Override
     @SuppressWarnings("unchecked")
     public Map<String, Object> handleRequest(Map<String, Object> input, Context context) {
+        // Every metric of this invocation goes out as one EMF line, split by outcome
+        long start = System.nanoTime();
+        JsonLogger logger = JsonLogger.fromHeaders("order-service", (Map<String, Object>) input.get("headers"));
+        MetricsContext metrics = METRICS.begin()
+                .dimension("FunctionName", context != null ? context.getFunctionName() : null);
+        StageTimings timings = new StageTimings(metrics);
+        JsonLogger.buffer();
+        Map<String, Object> result = null;
+        try {
+            result = placeOrder(input, context, logger, timings);
+            return result;
+        } finally {
+            String statusCode = result != null ? String.valueOf(result.get("statusCode")) : "500";
+            metrics.dimension("StatusCode", statusCode);
+            timings.stage("placeOrder", start);
+            // Where the time went, on the request's last log line
+            Map<String, Object> fields = timings.toLogFields();
+            fields.put("statusCode", statusCode);
+            logger.info("Order request completed", fields);
+            METRICS.end();
+            JsonLogger.flush();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> placeOrder(Map<String, Object> input, Context context,
+                                           JsonLogger logger, StageTimings timings) {
         Map<String, Object> headers = (Map<String, Object>) input.get("headers");
-        JsonLogger logger = JsonLogger.fromHeaders("order-service", headers);
 
         // Declare idempotencyKey outside the try block so the catch clause can
         // reference it when marking the idempotency record FAILED.
         String idempotencyKey = null;
 
         try {
-            // --- Input parsing ---
+            long stageStart = System.nanoTime();
+            // --- Input parsing + validation (single pass, see PlaceOrderRequest) ---
             String body = (String) input.get("body");
-            Map<String, Object> requestBody = MAPPER.readValue(body, new TypeReference<>() {});
-
-            String userId = (String) requestBody.get("userId");
-            List<OrderItem> items = MAPPER.convertValue(
-                    requestBody.get("items"),
-                    new TypeReference<List<OrderItem>>() {}
-            );
+            PlaceOrderRequest request = REQUEST_READER.readValue(body);
+            String userId = request.getUserId();
+            List<OrderItem> items = request.getItems();
 
-            // --- Input validation ---
+            // Type errors first: a userId or items of the wrong shape is reported as
+            // such rather than as missing
+            if (!request.getValidationErrors().isEmpty()) {
+                return response(400, MAPPER.writeValueAsString(
+                        Map.of("error", "Validation failed", "details", request.getValidationErrors())));
+            }
             if (userId == null || userId.isBlank()) {
                 return response(400, "{\"error\":\"userId is required\"}");
             }
             if (items == null || items.isEmpty()) {
                 return response(400, "{\"error\":\"items are required\"}");
             }
-            List<String> validationErrors = new ArrayList<>();
-            for (OrderItem item : items) {
-                if (item.getProductId() == null || item.getProductId().isBlank()) {
-                    validationErrors.add("productId is required for each item");
-                }
-                if (item.getQuantity() < 1) {
-                    validationErrors.add("quantity must be >= 1 for productId: " + item.getProductId());
-                }
-                if (item.getPrice() < 0) {
-                    validationErrors.add("price must be >= 0 for productId: " + item.getProductId());
-                }
-            }
-            if (!validationErrors.isEmpty()) {
-                return response(400, MAPPER.writeValueAsString(
-                        Map.of("error", "Validation failed", "details", validationErrors)));
-            }
+            stageStart = timings.stage("validation", stageStart);
 
-            // --- Idempotency: atomically claim the key before doing any work ---
-            // Uses conditional PutItem (attribute_not_exists) so only one concurrent
-            // request can win the slot — eliminates the GetItem→PutItem TOCTOU race.
+            // --- Idempotency: serve replays from the warm-container cache, then
+            // atomically claim the key before doing any work ---
+            // The claim is a conditional PutItem (attribute_not_exists) so only one
+            // concurrent request can win the slot — eliminates the GetItem→PutItem TOCTOU race.
             idempotencyKey = extractHeader(headers, "Idempotency-Key");
-            if (idempotencyKey != null && IDEMPOTENCY_TABLE != null) {
-                Map<String, AttributeValue> claimItem = new HashMap<>();
-                claimItem.put("idempotencyKey", AttributeValue.fromS(idempotencyKey));
-                claimItem.put("status", AttributeValue.fromS("IN_PROGRESS"));
-                claimItem.put("expiresAt", AttributeValue.fromN(
-                        String.valueOf(Instant.now().getEpochSecond() + 86400)));
+            if (idempotencyKey != null && IDEMPOTENCY != null) {
                 try {
-                    DYNAMO_CLIENT.putItem(PutItemRequest.builder()
-                            .tableName(IDEMPOTENCY_TABLE)
-                            .item(claimItem)
-                            .conditionExpression("attribute_not_exists(idempotencyKey)")
-                            .build());
-                    // Slot claimed — fall through to process the order
-                } catch (ConditionalCheckFailedException e) {
-                    // Key already exists; fetch the stored outcome
-                    GetItemResponse existing = DYNAMO_CLIENT.getItem(GetItemRequest.builder()
-                            .tableName(IDEMPOTENCY_TABLE)
-                            .key(Map.of("idempotencyKey", AttributeValue.fromS(idempotencyKey)))
-                            .build());
-                    if (existing.hasItem() && !existing.item().isEmpty()) {
-                        Map<String, AttributeValue> stored = existing.item();
-                        String storedStatus = stored.get("status").s();
-                        if ("COMPLETED".equals(storedStatus)) {
-                            int cachedStatus = Integer.parseInt(stored.get("statusCode").n());
-                            String cachedBody = stored.get("responseBody").s();
-                            logger.info("Idempotent response returned",
-                                    Map.of("idempotencyKey", idempotencyKey));
-                            return response(cachedStatus, cachedBody);
-                        }
-                        if ("IN_PROGRESS".equals(storedStatus)) {
-                            // A concurrent request is still running — tell the client to back off
-                            return response(409, "{\"error\":\"A request with this Idempotency-Key is already in progress\"}");
+                    IdempotencyRecord cached = IDEMPOTENCY.getCached(idempotencyKey);
+                    if (cached != null) {
+                        logger.info("Idempotent response returned from cache",
+                                Map.of("idempotencyKey", idempotencyKey));
+                        return response(cached.getStatusCode(), cached.getResponseBody());
+                    }
+                    if (!IDEMPOTENCY.claim(idempotencyKey)) {
+                        // Key already exists; fetch the stored outcome
+                        IdempotencyRecord existing = IDEMPOTENCY.find(idempotencyKey);
+                        // Opt-in "Prefer: wait=N": instead of bouncing a 409 straight back,
+                        // wait for the in-flight request to finish and replay its outcome
+                        long waitMillis = preferredWaitMillis(headers, context);
+                        if (existing != null && IdempotencyRepository.IN_PROGRESS.equals(existing.getStatus())
+                                && waitMillis > 0) {
+                            logger.info("Waiting for in-flight request with same Idempotency-Key",
+                                    Map.of("idempotencyKey", idempotencyKey, "waitMs", String.valueOf(waitMillis)));
+                            existing = IDEMPOTENCY.awaitOutcome(idempotencyKey, waitMillis);
                         }
-                        // FAILED: previous attempt failed after claiming the slot.
-                        // Delete the stale record so the client can retry with the same key.
-                        try {
-                            DYNAMO_CLIENT.deleteItem(software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest.builder()
-                                    .tableName(IDEMPOTENCY_TABLE)
-                                    .key(Map.of("idempotencyKey", AttributeValue.fromS(idempotencyKey)))
-                                    .build());
-                            logger.info("Stale FAILED idempotency record cleared; client may retry",
-                                    Map.of("idempotencyKey", idempotencyKey));
-                        } catch (Exception deleteEx) {
-                            logger.error("Failed to delete FAILED idempotency record",
-                                    Map.of("idempotencyKey", idempotencyKey,
-                                           "error", String.valueOf(deleteEx.getMessage())));
+                        if (existing != null) {
+                            if (IdempotencyRepository.COMPLETED.equals(existing.getStatus())) {
+                                logger.info("Idempotent response returned",
+                                        Map.of("idempotencyKey", idempotencyKey));
+                                return response(existing.getStatusCode(), existing.getResponseBody());
+                            }
+                            if (IdempotencyRepository.IN_PROGRESS.equals(existing.getStatus())) {
+                                // A concurrent request is still running — tell the client to back off
+                                return response(409, "{\"error\":\"A request with this Idempotency-Key is already in progress\"}");
+                            }
+                            // FAILED: previous attempt failed after claiming the slot.
+                            // Delete the stale record so the client can retry with the same key.
+                            try {
+                                IDEMPOTENCY.delete(idempotencyKey);
+                                logger.info("Stale FAILED idempotency record cleared; client may retry",
+                                        Map.of("idempotencyKey", idempotencyKey));
+                            } catch (Exception deleteEx) {
+                                logger.error("Failed to delete FAILED idempotency record",
+                                        Map.of("idempotencyKey", idempotencyKey,
+                                               "error", String.valueOf(deleteEx.getMessage())));
+                            }
+                            return response(503, "{\"error\":\"Previous attempt failed, please retry with the same Idempotency-Key\"}");
                         }
-                        return response(503, "{\"error\":\"Previous attempt failed, please retry with the same Idempotency-Key\"}");
+                        // Record vanished (TTL race) — tell client to retry
+                        return response(409, "{\"error\":\"A request with this Idempotency-Key is already in progress\"}");
                     }
-                    // Record vanished (TTL race) — tell client to retry
-                    return response(409, "{\"error\":\"A request with this Idempotency-Key is already in progress\"}");
+                    // Slot claimed — fall through to process the order
+                } finally {
+                    // Includes any Prefer: wait, so replays show up here too
+                    stageStart = timings.stage("idempotencyClaim", stageStart);
                 }
             }
 
             // --- Stock reservation via product catalog API ---
-            // Reserve each item sequentially; on any failure, release already-reserved items
-            // (compensating rollback) before returning an error.
+            // Reserve all items concurrently under one overall deadline; on any failure,
+            // release the items that were reserved (compensating rollback, queued for
+            // the catalog when STOCK_RELEASE_QUEUE_URL is set) before returning an error.
+            List<Integer> reserveStatuses = reserveAll(items, logger, timings);
+            timings.stage("stockReservation", stageStart);
+            CATALOG.publishMetrics();
             List<OrderItem> reserved = new ArrayList<>();
-            for (OrderItem item : items) {
-                int statusCode = callReserveStock(item.getProductId(), item.getQuantity(), logger);
-                if (statusCode == 409) {
-                    for (OrderItem r : reserved) {
-                        callReleaseStock(r.getProductId(), r.getQuantity(), logger);
-                    }
-                    String errorBody = MAPPER.writeValueAsString(Map.of(
-                            "error", "Insufficient stock",
-                            "items", List.of(Map.of(
-                                    "productId", item.getProductId(),
-                                    "reason", "insufficient stock"))));
-                    METRICS.count("StockInsufficient");
-                    return response(409, errorBody);
+            List<Map<String, String>> insufficient = new ArrayList<>();
+            boolean unavailable = false;
+            for (int i = 0; i < items.size(); i++) {
+                OrderItem item = items.get(i);
+                int statusCode = reserveStatuses.get(i);
+                if (statusCode == 200) {
+                    reserved.add(item);
+                } else if (statusCode == 409) {
+                    insufficient.add(Map.of(
+                            "productId", item.getProductId(),
+                            "reason", "insufficient stock"));
                 } else if (statusCode == 503) {
-                    for (OrderItem r : reserved) {
-                        callReleaseStock(r.getProductId(), r.getQuantity(), logger);
-                    }
-                    return response(503, "{\"error\":\"Product service unavailable, please retry\"}");
-                } else if (statusCode != 200) {
-                    for (OrderItem r : reserved) {
-                        callReleaseStock(r.getProductId(), r.getQuantity(), logger);
-                    }
+                    unavailable = true;
+                } else if (statusCode != NOT_RESERVED) {
                     logger.error("Unexpected response from product API", Map.of(
                             "productId", item.getProductId(), "statusCode", String.valueOf(statusCode)));
-                    return response(502, "{\"error\":\"Failed to reserve stock\"}");
                 }
-                reserved.add(item);
+            }
+            if (reserved.size() != items.size()) {
+                long releaseStart = System.nanoTime();
+                releaseAll(null, reserved, logger);
+                timings.stage("stockRelease", releaseStart);
+                if (!insufficient.isEmpty()) {
+                    String errorBody = MAPPER.writeValueAsString(Map.of(
+                            "error", "Insufficient stock",
+                            "items", insufficient));
+                    METRICS.count("StockInsufficient");
+                    return failIdempotency(idempotencyKey, response(409, errorBody), logger);
+                }
+                if (unavailable) {
+                    return failIdempotency(idempotencyKey,
+                            response(503, "{\"error\":\"Product service unavailable, please retry\"}"), logger);
+                }
+                return failIdempotency(idempotencyKey,
+                        response(502, "{\"error\":\"Failed to reserve stock\"}"), logger);
             }
 
             // --- Save order ---
@@ -212,31 +247,33 @@ public class PlaceOrderHandler implements RequestHandler<Map<String, Object>, Ma
                     .sum();
 
             String orderId = UUID.randomUUID().toString();
-            String itemsJson = MAPPER.writeValueAsString(items);
-
             Order order = new Order();
             order.setOrderId(orderId);
             order.setUserId(userId);
-            order.setItemsJson(itemsJson);
+            order.setItems(items);
             order.setTotalAmount(total);
             order.setStatus("PENDING");
             order.setCreatedAt(Instant.now().toString());
 
-            // --- Publish event before persisting the order ---
-            // SQS is published first so that if saveOrder fails, the event is
-            // already in the queue and the payment Lambda retries until the order
-            // record appears (or the message goes to the DLQ after 3 attempts).
-            // Payment Lambda guards against processing a not-yet-saved order via
-            // a conditional update on attribute_exists(orderId).
+            // --- Persist the order and its OrderPlacedEvent atomically ---
+            // The event goes into the outbox table in the same TransactWriteItems as
+            // the order; OutboxRelayHandler forwards it to SQS. The payment Lambda
+            // therefore never sees an event for an order that isn't saved, and an
+            // order can't be saved without its event eventually being published.
             OrderPlacedEvent event = new OrderPlacedEvent(orderId, userId, items, total);
+            // Carried through payment and shipment for log correlation and lag metrics
+            event.setCorrelationId(logger.getCorrelationId());
+            event.setPlacedAt(order.getCreatedAt());
             String eventJson = MAPPER.writeValueAsString(event);
-            SQS_CLIENT.sendMessage(SendMessageRequest.builder()
-                    .queueUrl(QUEUE_URL)
-                    .messageBody(eventJson)
-                    .build());
-
-            // --- Persist the order ---
-            REPOSITORY.saveOrder(order);
+            long saveStart = System.nanoTime();
+            try {
+                REPOSITORY.saveOrderWithOutbox(order, eventJson);
+                timings.stage("orderSave", saveStart);
+            } catch (RuntimeException saveEx) {
+                // Nothing downstream will ever see this order — hand the stock back
+                releaseAll(orderId, items, logger);
+                throw saveEx;
+            }
 
             logger.info("Order placed", Map.of("orderId", orderId, "userId", userId));
             METRICS.count("OrderPlaced");
@@ -244,19 +281,10 @@ public class PlaceOrderHandler implements RequestHandler<Map<String, Object>, Ma
             String responseBody = MAPPER.writeValueAsString(Map.of("orderId", orderId));
 
             // --- Mark idempotency record COMPLETED with the real response ---
-            if (idempotencyKey != null && IDEMPOTENCY_TABLE != null) {
-                DYNAMO_CLIENT.updateItem(UpdateItemRequest.builder()
-                        .tableName(IDEMPOTENCY_TABLE)
-                        .key(Map.of("idempotencyKey", AttributeValue.fromS(idempotencyKey)))
-                        .updateExpression("SET #st = :completed, statusCode = :sc, responseBody = :rb, orderId = :oid")
-                        .expressionAttributeNames(Map.of("#st", "status"))
-                        .expressionAttributeValues(Map.of(
-                                ":completed", AttributeValue.fromS("COMPLETED"),
-                                ":sc", AttributeValue.fromN("201"),
-                                ":rb", AttributeValue.fromS(responseBody),
-                                ":oid", AttributeValue.fromS(orderId)
-                        ))
-                        .build());
+            if (idempotencyKey != null && IDEMPOTENCY != null) {
+                long completeStart = System.nanoTime();
+                IDEMPOTENCY.complete(idempotencyKey, 201, responseBody, orderId);
+                timings.stage("idempotencyComplete", completeStart);
             }
 
             return Map.of(
@@ -270,71 +298,333 @@ public class PlaceOrderHandler implements RequestHandler<Map<String, Object>, Ma
             METRICS.count("OrderFailed");
             // Mark idempotency record FAILED so the client can retry with the same key.
             // Without this the slot stays IN_PROGRESS until the 24h TTL expires.
-            if (idempotencyKey != null && IDEMPOTENCY_TABLE != null) {
-                try {
-                    DYNAMO_CLIENT.updateItem(UpdateItemRequest.builder()
-                            .tableName(IDEMPOTENCY_TABLE)
-                            .key(Map.of("idempotencyKey", AttributeValue.fromS(idempotencyKey)))
-                            .updateExpression("SET #st = :failed")
-                            .expressionAttributeNames(Map.of("#st", "status"))
-                            .expressionAttributeValues(Map.of(
-                                    ":failed", AttributeValue.fromS("FAILED")
-                            ))
-                            .build());
-                    logger.info("Idempotency record marked FAILED",
-                            Map.of("idempotencyKey", idempotencyKey));
-                } catch (Exception idempotencyEx) {
-                    logger.error("Failed to mark idempotency record FAILED",
-                            Map.of("idempotencyKey", idempotencyKey,
-                                   "error", String.valueOf(idempotencyEx.getMessage())));
+            failIdempotency(idempotencyKey, null, logger);
+            return response(500, "{\"error\":\"Failed to place order\"}");
+        }
+    }
+
+    /**
+     * Marks a claimed idempotency slot FAILED so the client can retry with the same
+     * key, then returns the given response unchanged.
+     */
+    private Map<String, Object> failIdempotency(String idempotencyKey, Map<String, Object> result, JsonLogger logger) {
+        if (idempotencyKey == null || IDEMPOTENCY == null) return result;
+        try {
+            IDEMPOTENCY.markFailed(idempotencyKey);
+            logger.info("Idempotency record marked FAILED",
+                    Map.of("idempotencyKey", idempotencyKey));
+        } catch (Exception idempotencyEx) {
+            logger.error("Failed to mark idempotency record FAILED",
+                    Map.of("idempotencyKey", idempotencyKey,
+                           "error", String.valueOf(idempotencyEx.getMessage())));
+        }
+        return result;
+    }
+
+    /**
+     * Fans out one reserve call per item and waits for all of them under
+     * RESERVATION_DEADLINE_MS. Returns the HTTP status per item, in item order;
+     * calls still outstanding at the deadline are reported as 503, and any of them
+     * that still reserves is released before this returns.
+     *
+     * The catalog guard admits the order as a whole (one permit for the fan-out),
+     * so an order is never half-shed because it has more items than the limit.
+     */
+    private List<Integer> reserveAll(List<OrderItem> items, JsonLogger logger, StageTimings timings) {
+        if (BATCH_RESERVATION) return reserveBatch(items, logger, timings);
+        DependencyGuard.Permit permit = CATALOG.admit();
+        if (permit == null) {
+            logger.error("Stock reservation shed by catalog guard",
+                    Map.of("items", String.valueOf(items.size())));
+            return new ArrayList<>(Collections.nCopies(items.size(), 503));
+        }
+        Duration callTimeout = CATALOG.timeout();
+        long callsStart = System.nanoTime();
+        List<CompletableFuture<Integer>> futures = new ArrayList<>(items.size());
+        for (OrderItem item : items) {
+            long callStart = System.nanoTime();
+            futures.add(callReserveStock(permit, item.getProductId(), item.getQuantity(), logger)
+                    .whenComplete((code, e) -> timings.call("catalogReserve", callStart)));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).whenComplete((v, e) -> permit.close());
+        awaitAll(futures, "Stock reservation deadline exceeded", logger);
+
+        List<Integer> statuses = new ArrayList<>(items.size());
+        List<OrderItem> lateReserved = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            CompletableFuture<Integer> future = futures.get(i);
+            if (future.isDone()) {
+                statuses.add(future.join());
+                continue;
+            }
+            // Past the deadline the item fails either way, but the PATCH may still
+            // land: wait for its outcome so a late reservation doesn't leak stock.
+            statuses.add(503);
+            OrderItem item = items.get(i);
+            if (!awaitLate(future, callsStart, callTimeout)) {
+                logger.error("Late stock reservation unresolved", Map.of("productId", item.getProductId()));
+                METRICS.count("StockReservationUnresolved");
+                future.thenAccept(code -> {
+                    if (code == 200) releaseAll(null, List.of(item), logger);
+                });
+            } else if (future.join() == 200) {
+                lateReserved.add(item);
+            }
+        }
+        if (!lateReserved.isEmpty()) releaseAll(null, lateReserved, logger);
+        return statuses;
+    }
+
+    /**
+     * Hands reserved stock back. With STOCK_RELEASE_QUEUE_URL set, the releases are
+     * queued for the catalog's ReleaseStockHandler, so a slow catalog neither holds
+     * up the rollback nor loses the stock. Whatever the queue did not take, or
+     * everything without a queue, is released over HTTP.
+     */
+    private void releaseAll(String orderId, List<OrderItem> items, JsonLogger logger) {
+        if (items.isEmpty()) return;
+        if (STOCK_RELEASES != null) {
+            Map<String, Integer> quantities = new LinkedHashMap<>();
+            for (OrderItem item : items) {
+                quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+            }
+            StockReleasePublisher.Result result = STOCK_RELEASES.publish(orderId, logger.getCorrelationId(),
+                    StockReleasePublisher.ORDER_ROLLBACK, quantities);
+            Map<String, Integer> unsent = result.unsent();
+            METRICS.count("StockReleaseQueued", quantities.size() - unsent.size());
+            if (unsent.isEmpty()) return;
+            logger.error("Failed to queue stock release, releasing directly", "products", unsent.size());
+            METRICS.count("StockReleaseQueueFailed", unsent.size());
+            if (!result.uncertain().isEmpty()) {
+                logger.error("Stock release may also have been queued, direct release can double it",
+                        "products", result.uncertain().keySet());
+                METRICS.count("StockReleasePossibleDuplicate", result.uncertain().size());
+            }
+            List<OrderItem> remaining = new ArrayList<>(unsent.size());
+            for (OrderItem item : items) {
+                if (unsent.containsKey(item.getProductId())) remaining.add(item);
+            }
+            items = remaining;
+        }
+        if (BATCH_RESERVATION) {
+            releaseBatch(items, logger);
+            return;
+        }
+        List<CompletableFuture<Integer>> futures = new ArrayList<>(items.size());
+        for (OrderItem item : items) {
+            futures.add(callReleaseStock(item.getProductId(), item.getQuantity(), logger));
+        }
+        awaitAll(futures, "Stock release deadline exceeded", logger);
+    }
+
+    /**
+     * Reserves the whole order with a single POST /products/stock call. The catalog
+     * applies it in one transaction, so on 409 nothing is held: short items report
+     * 409 and the rest NOT_RESERVED.
+     */
+    private List<Integer> reserveBatch(List<OrderItem> items, JsonLogger logger, StageTimings timings) {
+        int statusCode;
+        Set<String> shortProductIds = new HashSet<>();
+        Duration callTimeout = CATALOG.timeout();
+        long callStart = System.nanoTime();
+        CompletableFuture<HttpResponse<String>> future = postBatchStock("reserve", items)
+                .whenComplete((resp, e) -> timings.call("catalogReserve", callStart));
+        try {
+            HttpResponse<String> resp = future.get(RESERVATION_DEADLINE_MS, TimeUnit.MILLISECONDS);
+            statusCode = resp.statusCode();
+            if (statusCode == 409) {
+                Map<String, Object> body = MAPPER.readValue(resp.body(), new TypeReference<>() {});
+                for (Map<String, Object> shortItem : MAPPER.convertValue(body.get("items"),
+                        new TypeReference<List<Map<String, Object>>>() {})) {
+                    shortProductIds.add(String.valueOf(shortItem.get("productId")));
                 }
             }
-            return response(500, "{\"error\":\"Failed to place order\"}");
+        } catch (TimeoutException e) {
+            logger.error("Batch stock reservation deadline exceeded",
+                    Map.of("deadlineMs", String.valueOf(RESERVATION_DEADLINE_MS)));
+            // Release the whole order if the transaction commits after we gave up on it
+            if (!awaitLate(future, callStart, callTimeout)) {
+                logger.error("Late batch stock reservation unresolved", Map.of("items", String.valueOf(items.size())));
+                METRICS.count("StockReservationUnresolved");
+                future.thenAccept(resp -> {
+                    if (resp.statusCode() == 200) releaseAll(null, items, logger);
+                });
+            } else if (!future.isCompletedExceptionally() && future.join().statusCode() == 200) {
+                releaseAll(null, items, logger);
+            }
+            statusCode = 503;
+        } catch (ExecutionException e) {
+            Throwable cause = unwrap(e.getCause());
+            boolean timeout = cause instanceof HttpTimeoutException;
+            boolean shed = cause instanceof RejectedExecutionException;
+            logger.error(shed ? "Batch reserve stock shed by catalog guard"
+                            : timeout ? "Timeout calling batch reserve stock" : "Failed to call batch reserve stock",
+                    Map.of("error", String.valueOf(cause.getMessage())));
+            statusCode = timeout || shed ? 503 : 500;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            statusCode = 503;
+        } catch (Exception e) {
+            logger.error("Failed to parse batch reserve response", Map.of("error", String.valueOf(e.getMessage())));
+            statusCode = 502;
+        }
+
+        List<Integer> statuses = new ArrayList<>(items.size());
+        for (OrderItem item : items) {
+            if (statusCode == 409) {
+                statuses.add(shortProductIds.contains(item.getProductId()) ? 409 : NOT_RESERVED);
+            } else {
+                statuses.add(statusCode);
+            }
         }
+        return statuses;
     }
 
-    private int callReserveStock(String productId, int qty, JsonLogger logger) {
+    private void releaseBatch(List<OrderItem> items, JsonLogger logger) {
         try {
-            String body = MAPPER.writeValueAsString(Map.of("reserve", qty));
-            HttpRequest req = HttpRequest.newBuilder()
-                    .uri(URI.create(PRODUCTS_API_URL + "/products/" + productId + "/stock"))
-                    .header("Content-Type", "application/json")
-                    .timeout(Duration.ofSeconds(10))
-                    .method("PATCH", HttpRequest.BodyPublishers.ofString(body))
-                    .build();
-            HttpResponse<String> resp = HTTP_CLIENT.send(req, HttpResponse.BodyHandlers.ofString());
-            return resp.statusCode();
-        } catch (HttpTimeoutException e) {
-            logger.error("Timeout calling reserve stock", Map.of("productId", productId));
-            return 503;
+            int statusCode = postBatchStock("release", items)
+                    .get(RESERVATION_DEADLINE_MS, TimeUnit.MILLISECONDS)
+                    .statusCode();
+            if (statusCode != 200) {
+                logger.error("Unexpected response from batch release stock",
+                        Map.of("statusCode", String.valueOf(statusCode)));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } catch (Exception e) {
-            logger.error("Failed to call reserve stock", Map.of(
-                    "productId", productId, "error", String.valueOf(e.getMessage())));
-            return 500;
+            logger.error("Failed to call batch release stock",
+                    Map.of("error", String.valueOf(unwrap(e instanceof ExecutionException ? e.getCause() : e).getMessage())));
         }
     }
 
-    private int callReleaseStock(String productId, int qty, JsonLogger logger) {
+    private CompletableFuture<HttpResponse<String>> postBatchStock(String operation, List<OrderItem> items) {
         try {
-            String body = MAPPER.writeValueAsString(Map.of("release", qty));
-            HttpRequest req = HttpRequest.newBuilder()
-                    .uri(URI.create(PRODUCTS_API_URL + "/products/" + productId + "/stock"))
-                    .header("Content-Type", "application/json")
-                    .timeout(Duration.ofSeconds(10))
-                    .method("PATCH", HttpRequest.BodyPublishers.ofString(body))
-                    .build();
-            HttpResponse<String> resp = HTTP_CLIENT.send(req, HttpResponse.BodyHandlers.ofString());
-            return resp.statusCode();
-        } catch (HttpTimeoutException e) {
-            logger.error("Timeout calling release stock", Map.of("productId", productId));
-            return 503;
+            List<Map<String, Object>> lines = new ArrayList<>(items.size());
+            for (OrderItem item : items) {
+                lines.add(Map.of("productId", item.getProductId(), "qty", item.getQuantity()));
+            }
+            String body = MAPPER.writeValueAsString(Map.of(operation, lines));
+            return CATALOG.call(timeout -> HTTP_CLIENT.sendAsync(HttpRequest.newBuilder()
+                            .uri(URI.create(PRODUCTS_API_URL + "/products/stock"))
+                            .header("Content-Type", "application/json")
+                            .timeout(timeout)
+                            .POST(HttpRequest.BodyPublishers.ofString(body))
+                            .build(), HttpResponse.BodyHandlers.ofString()),
+                    resp -> resp.statusCode() >= 500,
+                    "reserve".equals(operation));
         } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private void awaitAll(List<CompletableFuture<Integer>> futures, String timeoutMessage, JsonLogger logger) {
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                    .get(RESERVATION_DEADLINE_MS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            logger.error(timeoutMessage, Map.of("deadlineMs", String.valueOf(RESERVATION_DEADLINE_MS)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // Not reachable: per-call failures are already mapped to status codes
+        }
+    }
+
+    /**
+     * Gives a call that outlived the reservation deadline the rest of its own HTTP
+     * timeout to finish, and returns whether it did. Its result has to be acted on
+     * before the handler returns: after that Lambda may freeze the container, and a
+     * callback on the future would run much later or not at all.
+     */
+    private static boolean awaitLate(CompletableFuture<?> future, long callsStart, Duration callTimeout) {
+        long remainingMillis = callTimeout.toMillis() + LATE_CALL_GRACE_MS
+                - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - callsStart);
+        try {
+            future.get(Math.max(remainingMillis, 0), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            // Outcome is read from the future by the caller
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return future.isDone();
+    }
+
+    private CompletableFuture<Integer> callReserveStock(DependencyGuard.Permit permit, String productId, int qty,
+                                                        JsonLogger logger) {
+        return patchStock(permit, productId, "reserve", qty).exceptionally(e -> {
+            if (unwrap(e) instanceof HttpTimeoutException) {
+                logger.error("Timeout calling reserve stock", Map.of("productId", productId));
+                return 503;
+            }
+            logger.error("Failed to call reserve stock", Map.of(
+                    "productId", productId, "error", String.valueOf(unwrap(e).getMessage())));
+            return 500;
+        });
+    }
+
+    private CompletableFuture<Integer> callReleaseStock(String productId, int qty, JsonLogger logger) {
+        return patchStock(null, productId, "release", qty).exceptionally(e -> {
+            if (unwrap(e) instanceof HttpTimeoutException) {
+                logger.error("Timeout calling release stock", Map.of("productId", productId));
+                return 503;
+            }
             logger.error("Failed to call release stock", Map.of(
-                    "productId", productId, "error", String.valueOf(e.getMessage())));
+                    "productId", productId, "error", String.valueOf(unwrap(e).getMessage())));
             return 500;
+        });
+    }
+
+    // Reserves run under the order's permit; releases are compensations, counted
+    // by the guard but never shed
+    private CompletableFuture<Integer> patchStock(DependencyGuard.Permit permit, String productId,
+                                                  String operation, int qty) {
+        try {
+            String body = MAPPER.writeValueAsString(Map.of(operation, qty));
+            Function<Duration, CompletableFuture<Integer>> call = timeout -> HTTP_CLIENT.sendAsync(HttpRequest.newBuilder()
+                            .uri(URI.create(PRODUCTS_API_URL + "/products/" + productId + "/stock"))
+                            .header("Content-Type", "application/json")
+                            .timeout(timeout)
+                            .method("PATCH", HttpRequest.BodyPublishers.ofString(body))
+                            .build(), HttpResponse.BodyHandlers.discarding())
+                    .thenApply(HttpResponse::statusCode);
+            return permit != null
+                    ? permit.call(call, code -> code >= 500)
+                    : CATALOG.call(call, code -> code >= 500, false);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
         }
     }
 
+    private static Throwable unwrap(Throwable e) {
+        return (e instanceof CompletionException && e.getCause() != null) ? e.getCause() : e;
+    }
+
+    /**
+     * Parses the RFC 7240 "wait" preference (e.g. "Prefer: wait=5"), capped at
+     * MAX_IDEMPOTENCY_WAIT_SECONDS and at the invocation's remaining time minus a
+     * safety margin. Returns 0 when the client didn't ask to wait.
+     */
+    private long preferredWaitMillis(Map<String, Object> headers, Context context) {
+        String prefer = extractHeader(headers, "Prefer");
+        if (prefer == null) return 0;
+        long waitSeconds = 0;
+        for (String preference : prefer.split("[,;]")) {
+            String p = preference.trim();
+            if (p.regionMatches(true, 0, "wait=", 0, 5)) {
+                try {
+                    waitSeconds = Long.parseLong(p.substring(5).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        long waitMillis = Math.min(Math.max(waitSeconds, 0), MAX_IDEMPOTENCY_WAIT_SECONDS) * 1000;
+        if (context != null) {
+            waitMillis = Math.min(waitMillis, context.getRemainingTimeInMillis() - 2000L);
+        }
+        return Math.max(waitMillis, 0);
+    }
+
     private String extractHeader(Map<String, Object> headers, String name) {
         if (headers == null) return null;
         Object val = headers.get(name);
@@ -349,4 +639,26 @@ public class PlaceOrderHandler implements RequestHandler<Map<String, Object>, Ma
                 "body", body
         );
     }
+
+    @Override
+    public void beforeCheckpoint(org.crac.Context<? extends Resource> context) {
+        Priming.run("serialization", () -> {
+            Priming.roundTrip(MAPPER, new Order(), new OrderPlacedEvent());
+            REQUEST_READER.readValue("{\"userId\":\"u\",\"items\":[{\"productId\":\"p\",\"quantity\":1,\"price\":1.0}]}");
+        });
+        dryRun();
+    }
+
+    @Override
+    public void afterRestore(org.crac.Context<? extends Resource> context) {
+        dryRun();
+    }
+
+    // Read-only call that warms the SDK client and its connection
+    private void dryRun() {
+        Priming.run("dry-run", () -> {
+            REPOSITORY.getOrder(Priming.DRY_RUN_ID);
+            if (IDEMPOTENCY != null) IDEMPOTENCY.find(Priming.DRY_RUN_ID);
+        });
+    }
 }
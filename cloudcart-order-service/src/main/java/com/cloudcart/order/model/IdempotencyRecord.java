@@ -0,0 +1,29 @@
+package com.cloudcart.order.model;
+
+public class IdempotencyRecord {
+    private String idempotencyKey;
+    private String status;
+    private int statusCode;
+    private String responseBody;
+
+    public IdempotencyRecord() {}
+
+    public IdempotencyRecord(String idempotencyKey, String status, int statusCode, String responseBody) {
+        this.idempotencyKey = idempotencyKey;
+        this.status = status;
+        this.statusCode = statusCode;
+        this.responseBody = responseBody;
+    }
+
+    public String getIdempotencyKey() { return idempotencyKey; }
+    public void setIdempotencyKey(String idempotencyKey) { this.idempotencyKey = idempotencyKey; }
+
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+
+    public int getStatusCode() { return statusCode; }
+    public void setStatusCode(int statusCode) { this.statusCode = statusCode; }
+
+    public String getResponseBody() { return responseBody; }
+    public void setResponseBody(String responseBody) { this.responseBody = responseBody; }
+}
@@ -1,13 +1,27 @@
 package com.cloudcart.order.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.util.List;
+
 public class Order {
+    private static final ObjectWriter ITEMS_WRITER =
+            new ObjectMapper().writerFor(new TypeReference<List<OrderItem>>() {});
+
     private String orderId;
     private String userId;
+    private List<OrderItem> items;
     private String itemsJson;
     private double totalAmount;
     private String status;
     private String createdAt;
     private String trackingId;
+    private String paidAt;
+    private String failedAt;
     private String shippedAt;
 
     public Order() {}
@@ -18,7 +32,25 @@ public class Order {
     public String getUserId() { return userId; }
     public void setUserId(String userId) { this.userId = userId; }
 
-    public String getItemsJson() { return itemsJson; }
+    /** Typed line items; null for an order read from a row that stores them as JSON. */
+    @JsonIgnore
+    public List<OrderItem> getItems() { return items; }
+    public void setItems(List<OrderItem> items) { this.items = items; }
+
+    /**
+     * Line items as the JSON string the API returns. Taken as stored for JSON
+     * rows; for orders that only hold typed items it is written on first use.
+     */
+    public String getItemsJson() {
+        if (itemsJson == null && items != null) {
+            try {
+                itemsJson = ITEMS_WRITER.writeValueAsString(items);
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Failed to serialize order items", e);
+            }
+        }
+        return itemsJson;
+    }
     public void setItemsJson(String itemsJson) { this.itemsJson = itemsJson; }
 
     public double getTotalAmount() { return totalAmount; }
@@ -33,6 +65,12 @@ public class Order {
     public String getTrackingId() { return trackingId; }
     public void setTrackingId(String trackingId) { this.trackingId = trackingId; }
 
+    public String getPaidAt() { return paidAt; }
+    public void setPaidAt(String paidAt) { this.paidAt = paidAt; }
+
+    public String getFailedAt() { return failedAt; }
+    public void setFailedAt(String failedAt) { this.failedAt = failedAt; }
+
     public String getShippedAt() { return shippedAt; }
     public void setShippedAt(String shippedAt) { this.shippedAt = shippedAt; }
 }
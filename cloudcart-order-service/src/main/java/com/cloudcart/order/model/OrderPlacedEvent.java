@@ -7,6 +7,8 @@ public class OrderPlacedEvent {
     private String userId;
     private List<OrderItem> items;
     private double totalAmount;
+    private String correlationId;
+    private String placedAt;
 
     public OrderPlacedEvent() {}
 
@@ -28,4 +30,10 @@ public class OrderPlacedEvent {
 
     public double getTotalAmount() { return totalAmount; }
     public void setTotalAmount(double totalAmount) { this.totalAmount = totalAmount; }
+
+    public String getCorrelationId() { return correlationId; }
+    public void setCorrelationId(String correlationId) { this.correlationId = correlationId; }
+
+    public String getPlacedAt() { return placedAt; }
+    public void setPlacedAt(String placedAt) { this.placedAt = placedAt; }
 }
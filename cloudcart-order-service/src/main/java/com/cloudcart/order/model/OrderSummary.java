@@ -0,0 +1,22 @@
+package com.cloudcart.order.model;
+
+public class OrderSummary {
+    private String orderId;
+    private String status;
+    private double totalAmount;
+    private String createdAt;
+
+    public OrderSummary() {}
+
+    public String getOrderId() { return orderId; }
+    public void setOrderId(String orderId) { this.orderId = orderId; }
+
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+
+    public double getTotalAmount() { return totalAmount; }
+    public void setTotalAmount(double totalAmount) { this.totalAmount = totalAmount; }
+
+    public String getCreatedAt() { return createdAt; }
+    public void setCreatedAt(String createdAt) { this.createdAt = createdAt; }
+}
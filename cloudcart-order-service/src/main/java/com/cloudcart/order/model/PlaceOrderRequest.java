@@ -0,0 +1,131 @@
+package com.cloudcart.order.model;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Body of POST /orders. Bound straight from the token stream into typed
+ * OrderItems, with per-item validation done as each item is read — no
+ * intermediate Map tree and no separate validation pass.
+ */
+@JsonDeserialize(using = PlaceOrderRequest.Deserializer.class)
+public class PlaceOrderRequest {
+    private String userId;
+    private List<OrderItem> items;
+    private final List<String> validationErrors = new ArrayList<>();
+
+    public PlaceOrderRequest() {}
+
+    public String getUserId() { return userId; }
+    public void setUserId(String userId) { this.userId = userId; }
+
+    public List<OrderItem> getItems() { return items; }
+    public void setItems(List<OrderItem> items) { this.items = items; }
+
+    /** Item-level problems found while binding; empty when every item is valid. */
+    public List<String> getValidationErrors() { return validationErrors; }
+
+    static class Deserializer extends StdDeserializer<PlaceOrderRequest> {
+
+        Deserializer() {
+            super(PlaceOrderRequest.class);
+        }
+
+        @Override
+        public PlaceOrderRequest deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            if (!p.isExpectedStartObjectToken()) {
+                return (PlaceOrderRequest) ctxt.handleUnexpectedToken(PlaceOrderRequest.class, p);
+            }
+            PlaceOrderRequest request = new PlaceOrderRequest();
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                JsonToken value = p.nextToken();
+                if ("userId".equals(field)) {
+                    if (value == JsonToken.VALUE_NULL) {
+                        request.userId = null;
+                    } else if (scalar(p)) {
+                        request.userId = p.getValueAsString();
+                    } else {
+                        request.validationErrors.add("userId must be a string");
+                    }
+                } else if ("items".equals(field)) {
+                    request.items = readItems(p, request.validationErrors);
+                } else {
+                    p.skipChildren();
+                }
+            }
+            return request;
+        }
+
+        private List<OrderItem> readItems(JsonParser p, List<String> errors) throws IOException {
+            if (p.currentToken() == JsonToken.VALUE_NULL) return null;
+            if (!p.isExpectedStartArrayToken()) {
+                p.skipChildren();
+                errors.add("items must be a list");
+                return null;
+            }
+            List<OrderItem> items = new ArrayList<>();
+            while (p.nextToken() != JsonToken.END_ARRAY) {
+                if (!p.isExpectedStartObjectToken()) {
+                    p.skipChildren();
+                    errors.add("each item must be an object");
+                    continue;
+                }
+                OrderItem item = new OrderItem();
+                // Fields holding an object or array; reported once productId is known
+                List<String> malformed = new ArrayList<>(0);
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = p.currentName();
+                    JsonToken value = p.nextToken();
+                    if (value == JsonToken.VALUE_NULL) continue;
+                    if (!scalar(p)) {
+                        if (field.equals("productId") || field.equals("quantity") || field.equals("price")) {
+                            malformed.add(field);
+                        }
+                        continue;
+                    }
+                    switch (field) {
+                        case "productId" -> item.setProductId(p.getValueAsString());
+                        case "quantity" -> item.setQuantity(p.getValueAsInt(0));
+                        case "price" -> item.setPrice(p.getValueAsDouble(-1));
+                        default -> { }
+                    }
+                }
+                if (malformed.contains("productId")) {
+                    errors.add("productId must be a string");
+                } else if (item.getProductId() == null || item.getProductId().isBlank()) {
+                    errors.add("productId is required for each item");
+                }
+                if (malformed.contains("quantity")) {
+                    errors.add("quantity must be a number for productId: " + item.getProductId());
+                } else if (item.getQuantity() < 1) {
+                    errors.add("quantity must be >= 1 for productId: " + item.getProductId());
+                }
+                if (malformed.contains("price")) {
+                    errors.add("price must be a number for productId: " + item.getProductId());
+                } else if (item.getPrice() < 0) {
+                    errors.add("price must be >= 0 for productId: " + item.getProductId());
+                }
+                items.add(item);
+            }
+            return items;
+        }
+
+        /**
+         * True for a scalar value. An object or array is skipped past instead, so
+         * the caller doesn't read fields from inside it as if they were its own.
+         */
+        private static boolean scalar(JsonParser p) throws IOException {
+            if (p.currentToken().isScalarValue()) return true;
+            p.skipChildren();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.cloudcart.order.repository;
+
+import com.cloudcart.common.util.MetricsEmitter;
+import com.cloudcart.order.model.IdempotencyRecord;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Idempotency-Key store backed by IDEMPOTENCY_TABLE, with a bounded in-process
+ * cache of COMPLETED outcomes in front of it.
+ *
+ * A COMPLETED record never changes, so a replay that lands on a warm container
+ * that has already seen the outcome is answered without any DynamoDB call.
+ * Entries are evicted LRU once the cache is full and expire after
+ * IDEMPOTENCY_CACHE_TTL_SECONDS, which must stay below the table's 24h TTL.
+ */
+public class IdempotencyRepository {
+
+    public static final String IN_PROGRESS = "IN_PROGRESS";
+    public static final String COMPLETED = "COMPLETED";
+    public static final String FAILED = "FAILED";
+
+    private static final long RECORD_TTL_SECONDS = 86400;
+
+    private final DynamoDbClient dynamoDbClient;
+    private final String tableName;
+    private final MetricsEmitter metrics;
+    private final long cacheTtlMillis;
+    private final Map<String, CachedOutcome> completedCache;
+
+    public IdempotencyRepository(DynamoDbClient dynamoDbClient, String tableName, MetricsEmitter metrics) {
+        this.dynamoDbClient = dynamoDbClient;
+        this.tableName = tableName;
+        this.metrics = metrics;
+        this.cacheTtlMillis = envLong("IDEMPOTENCY_CACHE_TTL_SECONDS", 300) * 1000;
+        int maxEntries = (int) envLong("IDEMPOTENCY_CACHE_SIZE", 1000);
+        this.completedCache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedOutcome> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /** Returns the COMPLETED outcome for the key if this container has it cached, otherwise null. */
+    public IdempotencyRecord getCached(String idempotencyKey) {
+        CachedOutcome cached;
+        synchronized (completedCache) {
+            cached = completedCache.get(idempotencyKey);
+            if (cached != null && cached.expiresAtMillis < System.currentTimeMillis()) {
+                completedCache.remove(idempotencyKey);
+                cached = null;
+            }
+        }
+        if (cached == null) {
+            metrics.count("IdempotencyCacheMiss");
+            return null;
+        }
+        metrics.count("IdempotencyCacheHit");
+        return new IdempotencyRecord(idempotencyKey, COMPLETED, cached.statusCode, cached.responseBody);
+    }
+
+    /**
+     * Atomically claims the key as IN_PROGRESS. Uses a conditional PutItem
+     * (attribute_not_exists) so only one concurrent request can win the slot.
+     * Returns false if a record already exists.
+     */
+    public boolean claim(String idempotencyKey) {
+        Map<String, AttributeValue> claimItem = new HashMap<>();
+        claimItem.put("idempotencyKey", AttributeValue.fromS(idempotencyKey));
+        claimItem.put("status", AttributeValue.fromS(IN_PROGRESS));
+        claimItem.put("expiresAt", AttributeValue.fromN(
+                String.valueOf(Instant.now().getEpochSecond() + RECORD_TTL_SECONDS)));
+        try {
+            dynamoDbClient.putItem(PutItemRequest.builder()
+                    .tableName(tableName)
+                    .item(claimItem)
+                    .conditionExpression("attribute_not_exists(idempotencyKey)")
+                    .build());
+            return true;
+        } catch (ConditionalCheckFailedException e) {
+            return false;
+        }
+    }
+
+    /** Reads the stored record, or null if it doesn't exist. COMPLETED outcomes are cached. */
+    public IdempotencyRecord find(String idempotencyKey) {
+        return find(idempotencyKey, false);
+    }
+
+    /**
+     * Polls the record with capped exponential backoff (50ms → 500ms) until it
+     * leaves IN_PROGRESS or {@code timeoutMillis} elapses. Returns the last record
+     * seen — still IN_PROGRESS on timeout — or null if it disappeared.
+     */
+    public IdempotencyRecord awaitOutcome(String idempotencyKey, long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        long backoffMillis = 50;
+        IdempotencyRecord last = new IdempotencyRecord(idempotencyKey, IN_PROGRESS, 0, null);
+        while (true) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                metrics.count("IdempotencyWaitTimedOut");
+                return last;
+            }
+            try {
+                Thread.sleep(Math.min(backoffMillis, remaining));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return last;
+            }
+            // Strongly consistent so the waiter sees the owner's completion promptly
+            last = find(idempotencyKey, true);
+            if (last == null || !IN_PROGRESS.equals(last.getStatus())) {
+                metrics.count("IdempotencyWaitResolved");
+                return last;
+            }
+            backoffMillis = Math.min(backoffMillis * 2, 500);
+        }
+    }
+
+    private IdempotencyRecord find(String idempotencyKey, boolean consistentRead) {
+        GetItemResponse existing = dynamoDbClient.getItem(GetItemRequest.builder()
+                .tableName(tableName)
+                .key(Map.of("idempotencyKey", AttributeValue.fromS(idempotencyKey)))
+                .consistentRead(consistentRead)
+                .build());
+        if (!existing.hasItem() || existing.item().isEmpty()) {
+            return null;
+        }
+
+        Map<String, AttributeValue> stored = existing.item();
+        IdempotencyRecord record = new IdempotencyRecord();
+        record.setIdempotencyKey(idempotencyKey);
+        record.setStatus(stored.get("status").s());
+        if (COMPLETED.equals(record.getStatus())) {
+            record.setStatusCode(Integer.parseInt(stored.get("statusCode").n()));
+            record.setResponseBody(stored.get("responseBody").s());
+            cache(idempotencyKey, record.getStatusCode(), record.getResponseBody());
+        }
+        return record;
+    }
+
+    public void complete(String idempotencyKey, int statusCode, String responseBody, String orderId) {
+        dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                .tableName(tableName)
+                .key(Map.of("idempotencyKey", AttributeValue.fromS(idempotencyKey)))
+                .updateExpression("SET #st = :completed, statusCode = :sc, responseBody = :rb, orderId = :oid")
+                .expressionAttributeNames(Map.of("#st", "status"))
+                .expressionAttributeValues(Map.of(
+                        ":completed", AttributeValue.fromS(COMPLETED),
+                        ":sc", AttributeValue.fromN(String.valueOf(statusCode)),
+                        ":rb", AttributeValue.fromS(responseBody),
+                        ":oid", AttributeValue.fromS(orderId)
+                ))
+                .build());
+        cache(idempotencyKey, statusCode, responseBody);
+    }
+
+    public void markFailed(String idempotencyKey) {
+        dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                .tableName(tableName)
+                .key(Map.of("idempotencyKey", AttributeValue.fromS(idempotencyKey)))
+                .updateExpression("SET #st = :failed")
+                .expressionAttributeNames(Map.of("#st", "status"))
+                .expressionAttributeValues(Map.of(
+                        ":failed", AttributeValue.fromS(FAILED)
+                ))
+                .build());
+    }
+
+    public void delete(String idempotencyKey) {
+        dynamoDbClient.deleteItem(DeleteItemRequest.builder()
+                .tableName(tableName)
+                .key(Map.of("idempotencyKey", AttributeValue.fromS(idempotencyKey)))
+                .build());
+    }
+
+    private void cache(String idempotencyKey, int statusCode, String responseBody) {
+        synchronized (completedCache) {
+            completedCache.put(idempotencyKey, new CachedOutcome(
+                    statusCode, responseBody, System.currentTimeMillis() + cacheTtlMillis));
+        }
+    }
+
+    private static long envLong(String name, long defaultValue) {
+        String value = System.getenv(name);
+        return value != null && !value.isBlank() ? Long.parseLong(value) : defaultValue;
+    }
+
+    private static final class CachedOutcome {
+        final int statusCode;
+        final String responseBody;
+        final long expiresAtMillis;
+
+        CachedOutcome(int statusCode, String responseBody, long expiresAtMillis) {
+            this.statusCode = statusCode;
+            this.responseBody = responseBody;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+}
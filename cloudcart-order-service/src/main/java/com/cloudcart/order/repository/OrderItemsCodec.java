@@ -0,0 +1,138 @@
+package com.cloudcart.order.repository;
+
+import com.cloudcart.order.model.Order;
+import com.cloudcart.order.model.OrderItem;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Maps an order's line items to and from DynamoDB attributes.
+ *
+ * The write format is chosen by ORDER_ITEMS_FORMAT:
+ * - json (default): JSON string in "itemsJson" — the original layout
+ * - list: native list of maps in "items"
+ * - deflate: deflate-compressed JSON in binary "itemsZ"
+ *
+ * Reads detect the format from whichever attribute is present, so rows written
+ * under any setting stay readable while the table is migrated. Items go in as
+ * typed OrderItems. They come out typed from a list row and as the stored JSON
+ * otherwise, so neither direction converts between the two. Order renders
+ * typed items as the same itemsJson string, keeping the API response unchanged.
+ */
+class OrderItemsCodec {
+
+    enum Format { JSON, LIST, DEFLATE }
+
+    private static final ObjectWriter ITEMS_WRITER = new ObjectMapper().writerFor(new TypeReference<List<OrderItem>>() {});
+
+    private final Format writeFormat;
+
+    OrderItemsCodec() {
+        String configured = System.getenv("ORDER_ITEMS_FORMAT");
+        this.writeFormat = configured != null && !configured.isBlank()
+                ? Format.valueOf(configured.trim().toUpperCase())
+                : Format.JSON;
+    }
+
+    void write(Map<String, AttributeValue> item, List<OrderItem> items) {
+        switch (writeFormat) {
+            case LIST -> item.put("items", AttributeValue.fromL(toList(items)));
+            case DEFLATE -> item.put("itemsZ", AttributeValue.fromB(SdkBytes.fromByteArray(deflate(toJson(items)))));
+            default -> item.put("itemsJson", AttributeValue.fromS(new String(toJson(items), StandardCharsets.UTF_8)));
+        }
+    }
+
+    /** Sets the row's items on {@code order}; leaves both unset if the row carries none of the item attributes. */
+    void read(Map<String, AttributeValue> row, Order order) {
+        if (row.containsKey("itemsJson")) {
+            order.setItemsJson(row.get("itemsJson").s());
+        } else if (row.containsKey("items")) {
+            order.setItems(fromList(row.get("items").l()));
+        } else if (row.containsKey("itemsZ")) {
+            order.setItemsJson(new String(inflate(row.get("itemsZ").b().asByteArray()), StandardCharsets.UTF_8));
+        }
+    }
+
+    private List<AttributeValue> toList(List<OrderItem> items) {
+        List<AttributeValue> list = new ArrayList<>(items.size());
+        for (OrderItem orderItem : items) {
+            list.add(AttributeValue.fromM(Map.of(
+                    "productId", AttributeValue.fromS(orderItem.getProductId()),
+                    "quantity", AttributeValue.fromN(String.valueOf(orderItem.getQuantity())),
+                    "price", AttributeValue.fromN(String.valueOf(orderItem.getPrice()))
+            )));
+        }
+        return list;
+    }
+
+    private List<OrderItem> fromList(List<AttributeValue> list) {
+        List<OrderItem> items = new ArrayList<>(list.size());
+        for (AttributeValue value : list) {
+            Map<String, AttributeValue> m = value.m();
+            OrderItem orderItem = new OrderItem();
+            orderItem.setProductId(m.get("productId").s());
+            orderItem.setQuantity(Integer.parseInt(m.get("quantity").n()));
+            orderItem.setPrice(Double.parseDouble(m.get("price").n()));
+            items.add(orderItem);
+        }
+        return items;
+    }
+
+    private static byte[] toJson(List<OrderItem> items) {
+        try {
+            return ITEMS_WRITER.writeValueAsBytes(items);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize order items", e);
+        }
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 2));
+            byte[] buffer = new byte[1024];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] compressed) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(compressed.length * 4);
+            byte[] buffer = new byte[1024];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("Truncated itemsZ attribute");
+                }
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt itemsZ attribute", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -1,43 +1,124 @@
 package com.cloudcart.order.repository;
 
+import com.cloudcart.common.aws.AwsClients;
 import com.cloudcart.order.model.Order;
+import com.cloudcart.order.model.OrderSummary;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
-import software.amazon.awssdk.services.dynamodb.DynamoDbClientBuilder;
 import software.amazon.awssdk.services.dynamodb.model.*;
 
-import java.net.URI;
+import java.io.IOException;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 public class OrderRepository {
 
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String USER_CREATED_INDEX = "userId-createdAt-index";
+    private static final long OUTBOX_TTL_SECONDS = 7 * 86400;
+    private static final int MAX_BATCH_WRITE_ATTEMPTS = 5;
+
     private final DynamoDbClient dynamoDbClient;
     private final String tableName = System.getenv("ORDERS_TABLE");
+    private final String outboxTable = System.getenv("OUTBOX_TABLE");
+    private final OrderItemsCodec itemsCodec = new OrderItemsCodec();
 
     public OrderRepository() {
-        DynamoDbClientBuilder builder = DynamoDbClient.builder();
-        String endpointUrl = System.getenv("AWS_ENDPOINT_URL");
-        if (endpointUrl != null && !endpointUrl.isEmpty()) {
-            builder.endpointOverride(URI.create(endpointUrl));
-        }
-        this.dynamoDbClient = builder.build();
+        this.dynamoDbClient = AwsClients.dynamoDb();
     }
 
-    public void saveOrder(Order order) {
-        Map<String, AttributeValue> item = new HashMap<>();
-        item.put("orderId", AttributeValue.fromS(order.getOrderId()));
-        item.put("userId", AttributeValue.fromS(order.getUserId()));
-        item.put("itemsJson", AttributeValue.fromS(order.getItemsJson()));
-        item.put("totalAmount", AttributeValue.fromN(String.valueOf(order.getTotalAmount())));
-        item.put("status", AttributeValue.fromS(order.getStatus()));
-        item.put("createdAt", AttributeValue.fromS(order.getCreatedAt()));
+    /**
+     * Writes the order and an outbox record carrying its event in one
+     * TransactWriteItems, so either both exist or neither does.
+     */
+    public void saveOrderWithOutbox(Order order, String eventJson) {
+        Map<String, AttributeValue> outboxItem = new HashMap<>();
+        outboxItem.put("outboxId", AttributeValue.fromS(order.getOrderId()));
+        outboxItem.put("payload", AttributeValue.fromS(eventJson));
+        outboxItem.put("createdAt", AttributeValue.fromS(order.getCreatedAt()));
+        // Safety net only — the relay deletes records once published
+        outboxItem.put("expiresAt", AttributeValue.fromN(
+                String.valueOf(Instant.now().getEpochSecond() + OUTBOX_TTL_SECONDS)));
 
-        dynamoDbClient.putItem(PutItemRequest.builder()
-                .tableName(tableName)
-                .item(item)
+        dynamoDbClient.transactWriteItems(TransactWriteItemsRequest.builder()
+                .transactItems(
+                        TransactWriteItem.builder().put(Put.builder()
+                                .tableName(tableName)
+                                .item(toItem(order))
+                                .conditionExpression("attribute_not_exists(orderId)")
+                                .build()).build(),
+                        TransactWriteItem.builder().put(Put.builder()
+                                .tableName(outboxTable)
+                                .item(outboxItem)
+                                .build()).build())
+                .build());
+    }
+
+    /**
+     * Returns up to {@code limit} unpublished outbox records as outboxId → event JSON.
+     * Used by the relay's polling mode.
+     */
+    public Map<String, String> scanOutbox(int limit) {
+        ScanResponse response = dynamoDbClient.scan(ScanRequest.builder()
+                .tableName(outboxTable)
+                .limit(limit)
                 .build());
+
+        Map<String, String> pending = new LinkedHashMap<>();
+        for (Map<String, AttributeValue> row : response.items()) {
+            pending.put(row.get("outboxId").s(), row.get("payload").s());
+        }
+        return pending;
+    }
+
+    /**
+     * Deletes relayed outbox records. Items a BatchWriteItem call leaves
+     * unprocessed (throttling) are resent with capped exponential backoff
+     * (50ms → 500ms); if some remain after MAX_BATCH_WRITE_ATTEMPTS calls this
+     * throws, and the relay publishes those records again.
+     */
+    public void deleteOutbox(Collection<String> outboxIds) {
+        List<WriteRequest> deletes = new ArrayList<>();
+        for (String outboxId : outboxIds) {
+            deletes.add(WriteRequest.builder()
+                    .deleteRequest(DeleteRequest.builder()
+                            .key(Map.of("outboxId", AttributeValue.fromS(outboxId)))
+                            .build())
+                    .build());
+        }
+        // BatchWriteItem allows at most 25 requests per call
+        for (int i = 0; i < deletes.size(); i += 25) {
+            Map<String, List<WriteRequest>> request =
+                    Map.of(outboxTable, deletes.subList(i, Math.min(i + 25, deletes.size())));
+            long backoffMillis = 50;
+            for (int attempt = 1; ; attempt++) {
+                BatchWriteItemResponse batch = dynamoDbClient.batchWriteItem(BatchWriteItemRequest.builder()
+                        .requestItems(request)
+                        .build());
+                if (!batch.hasUnprocessedItems() || batch.unprocessedItems().isEmpty()) break;
+                request = batch.unprocessedItems();
+                if (attempt == MAX_BATCH_WRITE_ATTEMPTS) {
+                    throw new IllegalStateException(request.getOrDefault(outboxTable, List.of()).size()
+                            + " outbox deletes still unprocessed after " + attempt + " attempts");
+                }
+                try {
+                    Thread.sleep(backoffMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while retrying outbox deletes", e);
+                }
+                backoffMillis = Math.min(backoffMillis * 2, 500);
+            }
+        }
     }
 
     public Order getOrder(String orderId) {
@@ -55,17 +136,74 @@ public class OrderRepository {
         return toOrder(response.item());
     }
 
-    public List<Order> listByUser(String userId) {
-        QueryResponse response = dynamoDbClient.query(QueryRequest.builder()
+    /**
+     * Returns one page of a user's orders, newest first, from the
+     * userId-createdAt-index GSI. The index projects only the summary attributes,
+     * so by default each entry is an OrderSummary; with {@code fullItems} the page's
+     * orders are fetched from the base table with BatchGetItem and returned as Orders.
+     *
+     * The result map holds "orders" and, when more remain, an opaque "nextToken".
+     * Throws IllegalArgumentException if {@code nextToken} is malformed.
+     */
+    public Map<String, Object> listByUser(String userId, int limit, String nextToken, boolean fullItems) {
+        QueryRequest.Builder query = QueryRequest.builder()
                 .tableName(tableName)
-                .indexName("userId-index")
+                .indexName(USER_CREATED_INDEX)
                 .keyConditionExpression("userId = :uid")
                 .expressionAttributeValues(Map.of(":uid", AttributeValue.fromS(userId)))
-                .build());
+                .scanIndexForward(false)
+                .limit(limit);
+        if (nextToken != null && !nextToken.isEmpty()) {
+            query.exclusiveStartKey(decodePageToken(nextToken, userId));
+        }
+        QueryResponse response = dynamoDbClient.query(query.build());
 
-        List<Order> orders = new ArrayList<>();
-        for (Map<String, AttributeValue> row : response.items()) {
-            orders.add(toOrder(row));
+        List<Object> orders = new ArrayList<>();
+        if (fullItems) {
+            orders.addAll(getOrders(response.items()));
+        } else {
+            for (Map<String, AttributeValue> row : response.items()) {
+                orders.add(toSummary(row));
+            }
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("orders", orders);
+        if (response.hasLastEvaluatedKey() && !response.lastEvaluatedKey().isEmpty()) {
+            result.put("nextToken", encodePageToken(response.lastEvaluatedKey()));
+        }
+        return result;
+    }
+
+    // Fetches full orders for index rows, preserving the rows' (newest-first) order
+    private List<Order> getOrders(List<Map<String, AttributeValue>> indexRows) {
+        List<Map<String, AttributeValue>> keys = new ArrayList<>();
+        for (Map<String, AttributeValue> row : indexRows) {
+            keys.add(Map.of("orderId", row.get("orderId")));
+        }
+
+        Map<String, Order> byId = new HashMap<>();
+        // BatchGetItem allows at most 100 keys per call
+        for (int i = 0; i < keys.size(); i += 100) {
+            Map<String, KeysAndAttributes> request = Map.of(tableName, KeysAndAttributes.builder()
+                    .keys(keys.subList(i, Math.min(i + 100, keys.size())))
+                    .build());
+            while (request != null && !request.isEmpty()) {
+                BatchGetItemResponse batch = dynamoDbClient.batchGetItem(BatchGetItemRequest.builder()
+                        .requestItems(request)
+                        .build());
+                for (Map<String, AttributeValue> row : batch.responses().getOrDefault(tableName, List.of())) {
+                    Order order = toOrder(row);
+                    byId.put(order.getOrderId(), order);
+                }
+                request = batch.hasUnprocessedKeys() ? batch.unprocessedKeys() : null;
+            }
+        }
+
+        List<Order> orders = new ArrayList<>(indexRows.size());
+        for (Map<String, AttributeValue> row : indexRows) {
+            Order order = byId.get(row.get("orderId").s());
+            if (order != null) orders.add(order);
         }
         return orders;
     }
@@ -82,17 +220,75 @@ public class OrderRepository {
                 .build());
     }
 
+    private Map<String, AttributeValue> toItem(Order order) {
+        Map<String, AttributeValue> item = new HashMap<>();
+        item.put("orderId", AttributeValue.fromS(order.getOrderId()));
+        item.put("userId", AttributeValue.fromS(order.getUserId()));
+        itemsCodec.write(item, order.getItems());
+        item.put("totalAmount", AttributeValue.fromN(String.valueOf(order.getTotalAmount())));
+        item.put("status", AttributeValue.fromS(order.getStatus()));
+        item.put("createdAt", AttributeValue.fromS(order.getCreatedAt()));
+        return item;
+    }
+
+    private OrderSummary toSummary(Map<String, AttributeValue> row) {
+        OrderSummary summary = new OrderSummary();
+        summary.setOrderId(row.get("orderId").s());
+        summary.setStatus(row.get("status").s());
+        summary.setTotalAmount(Double.parseDouble(row.get("totalAmount").n()));
+        summary.setCreatedAt(row.get("createdAt").s());
+        return summary;
+    }
+
+    // The page token is the query's LastEvaluatedKey (all string attributes) as base64url JSON
+    private static String encodePageToken(Map<String, AttributeValue> lastKey) {
+        Map<String, String> plain = new TreeMap<>();
+        for (Map.Entry<String, AttributeValue> entry : lastKey.entrySet()) {
+            plain.put(entry.getKey(), entry.getValue().s());
+        }
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(MAPPER.writeValueAsBytes(plain));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to encode page token", e);
+        }
+    }
+
+    private static Map<String, AttributeValue> decodePageToken(String token, String userId) {
+        Map<String, String> plain;
+        try {
+            plain = MAPPER.readValue(Base64.getUrlDecoder().decode(token), new TypeReference<Map<String, String>>() {});
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid nextToken", e);
+        }
+        // A token is only valid for the user it was issued to
+        if (plain == null || !userId.equals(plain.get("userId"))
+                || plain.get("orderId") == null || plain.get("createdAt") == null) {
+            throw new IllegalArgumentException("Invalid nextToken");
+        }
+        Map<String, AttributeValue> key = new HashMap<>();
+        key.put("orderId", AttributeValue.fromS(plain.get("orderId")));
+        key.put("userId", AttributeValue.fromS(plain.get("userId")));
+        key.put("createdAt", AttributeValue.fromS(plain.get("createdAt")));
+        return key;
+    }
+
     private Order toOrder(Map<String, AttributeValue> row) {
         Order order = new Order();
         order.setOrderId(row.get("orderId").s());
         order.setUserId(row.get("userId").s());
-        order.setItemsJson(row.get("itemsJson").s());
+        itemsCodec.read(row, order);
         order.setTotalAmount(Double.parseDouble(row.get("totalAmount").n()));
         order.setStatus(row.get("status").s());
         order.setCreatedAt(row.get("createdAt").s());
         if (row.containsKey("trackingId")) {
             order.setTrackingId(row.get("trackingId").s());
         }
+        if (row.containsKey("paidAt")) {
+            order.setPaidAt(row.get("paidAt").s());
+        }
+        if (row.containsKey("failedAt")) {
+            order.setFailedAt(row.get("failedAt").s());
+        }
         if (row.containsKey("shippedAt")) {
             order.setShippedAt(row.get("shippedAt").s());
         }
@@ -0,0 +1,270 @@
+package com.cloudcart.order.util;
+
+import com.cloudcart.common.util.MetricsEmitter;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Client-side protection for calls to a downstream service. It has three parts:
+ *
+ * - Circuit breaker. It opens when at least half of the last BREAKER_WINDOW calls
+ *   failed, rejects calls for BREAKER_OPEN_MS, then lets a single probe through.
+ * - AIMD concurrency limit. The limit grows by 1/limit on each success and
+ *   shrinks by 30% on each failure. Calls beyond it are rejected. A fan-out made
+ *   under one {@link #admit()} permit takes a single slot and is admitted or
+ *   rejected as a whole, so the limit never caps how many items an order has.
+ * - Latency-aware timeout. It is 2x the observed p99 of successful calls, clamped
+ *   to [TIMEOUT_MIN_MS, TIMEOUT_MAX_MS].
+ *
+ * A rejected call fails with RejectedExecutionException without touching the
+ * network. State lives for the life of the container, so it carries across warm
+ * invocations.
+ */
+public class DependencyGuard {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private static final int LATENCY_SAMPLES = 256;
+    private static final int MIN_LATENCY_SAMPLES = 20;
+    private static final double MIN_LIMIT = 2;
+    private static final double MAX_LIMIT = 200;
+
+    private final String name;
+    private final MetricsEmitter metrics;
+    private final int window = envInt("BREAKER_WINDOW", 20);
+    private final long openMillis = envInt("BREAKER_OPEN_MS", 5000);
+    private final long minTimeoutMillis = envInt("TIMEOUT_MIN_MS", 1000);
+    private final long maxTimeoutMillis = envInt("TIMEOUT_MAX_MS", 10_000);
+
+    // Breaker: ring of recent outcomes (true = failure)
+    private final boolean[] outcomes = new boolean[window];
+    private int outcomeCount;
+    private int outcomeIndex;
+    private int failures;
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean probeInFlight;
+
+    // Limiter
+    private double limit = envInt("CONCURRENCY_LIMIT_INITIAL", 20);
+    private int inFlight;
+
+    // Latency ring of successful calls, in millis
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+    private int latencyCount;
+    private int latencyIndex;
+
+    public DependencyGuard(String name, MetricsEmitter metrics) {
+        this.name = name;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Runs {@code call} with the current timeout if the breaker and the limiter
+     * admit it. {@code isFailure} classifies completed results, for example 5xx
+     * statuses. Calls that are not sheddable are never rejected, because
+     * compensating releases must still go out, but their outcomes still count.
+     */
+    public <T> CompletableFuture<T> call(Function<Duration, CompletableFuture<T>> call,
+                                         Predicate<T> isFailure, boolean sheddable) {
+        boolean probe;
+        synchronized (this) {
+            probe = false;
+            if (sheddable) {
+                if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openMillis) {
+                    transition(State.HALF_OPEN);
+                }
+                if (state == State.OPEN || (state == State.HALF_OPEN && probeInFlight)) {
+                    return reject("circuit open");
+                }
+                if (inFlight >= (int) limit) {
+                    return reject("concurrency limit " + (int) limit + " reached");
+                }
+                if (state == State.HALF_OPEN) {
+                    probeInFlight = true;
+                    probe = true;
+                }
+            }
+            inFlight++;
+        }
+
+        boolean isProbe = probe;
+        long start = System.nanoTime();
+        CompletableFuture<T> future;
+        try {
+            future = call.apply(timeout());
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        return future.whenComplete((result, error) -> {
+            boolean failed = error != null || isFailure.test(result);
+            record(failed, (System.nanoTime() - start) / 1_000_000, isProbe);
+        });
+    }
+
+    /**
+     * Admits one request's fan-out as a whole: the breaker and the limiter are
+     * checked once and the permit holds one slot until it is closed. Returns null
+     * if the request is rejected.
+     */
+    public Permit admit() {
+        synchronized (this) {
+            if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openMillis) {
+                transition(State.HALF_OPEN);
+            }
+            String reason = null;
+            if (state == State.OPEN || (state == State.HALF_OPEN && probeInFlight)) {
+                reason = "circuit open";
+            } else if (inFlight >= (int) limit) {
+                reason = "concurrency limit " + (int) limit + " reached";
+            }
+            if (reason == null) {
+                boolean probe = state == State.HALF_OPEN;
+                if (probe) probeInFlight = true;
+                inFlight++;
+                return new Permit(probe);
+            }
+        }
+        metrics.count(name + "CallRejected");
+        return null;
+    }
+
+    public synchronized Duration timeout() {
+        if (latencyCount < MIN_LATENCY_SAMPLES) return Duration.ofMillis(maxTimeoutMillis);
+        long[] sorted = Arrays.copyOf(latencies, latencyCount);
+        Arrays.sort(sorted);
+        long p99 = sorted[Math.min(sorted.length - 1, (int) Math.ceil(sorted.length * 0.99) - 1)];
+        return Duration.ofMillis(Math.max(minTimeoutMillis, Math.min(maxTimeoutMillis, p99 * 2)));
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    /** Emits breaker state and limiter statistics; call once per invocation. */
+    public void publishMetrics() {
+        State current;
+        double currentLimit;
+        int currentInFlight;
+        synchronized (this) {
+            current = state;
+            currentLimit = limit;
+            currentInFlight = inFlight;
+        }
+        metrics.emit(name + "BreakerOpen", current == State.CLOSED ? 0 : 1, "Count");
+        metrics.emit(name + "ConcurrencyLimit", Math.floor(currentLimit), "Count");
+        metrics.emit(name + "InFlight", currentInFlight, "Count");
+        metrics.emit(name + "TimeoutMs", timeout().toMillis(), "Milliseconds");
+    }
+
+    private synchronized void record(boolean failed, long latencyMillis, boolean probe) {
+        recordLatency(failed, latencyMillis);
+        if (!release(failed, probe)) recordOutcome(failed);
+    }
+
+    // Frees a slot and adjusts the limit; returns true if it settled a half-open probe.
+    // Caller holds the lock.
+    private boolean release(boolean failed, boolean probe) {
+        inFlight--;
+        if (probe) probeInFlight = false;
+        limit = failed ? Math.max(MIN_LIMIT, limit * 0.7) : Math.min(MAX_LIMIT, limit + 1 / limit);
+
+        if (state == State.HALF_OPEN && probe) {
+            transition(failed ? State.OPEN : State.CLOSED);
+            return true;
+        }
+        return false;
+    }
+
+    // Caller holds the lock
+    private void recordLatency(boolean failed, long latencyMillis) {
+        if (failed) return;
+        latencies[latencyIndex] = latencyMillis;
+        latencyIndex = (latencyIndex + 1) % LATENCY_SAMPLES;
+        latencyCount = Math.min(latencyCount + 1, LATENCY_SAMPLES);
+    }
+
+    // Breaker window; caller holds the lock
+    private void recordOutcome(boolean failed) {
+        if (outcomeCount == window && outcomes[outcomeIndex]) failures--;
+        outcomes[outcomeIndex] = failed;
+        if (failed) failures++;
+        outcomeIndex = (outcomeIndex + 1) % window;
+        outcomeCount = Math.min(outcomeCount + 1, window);
+
+        if (state == State.CLOSED && outcomeCount >= window / 2 && failures * 2 >= outcomeCount) {
+            transition(State.OPEN);
+        }
+    }
+
+    // Caller holds the lock
+    private void transition(State next) {
+        state = next;
+        if (next == State.OPEN) {
+            openedAt = System.currentTimeMillis();
+            metrics.count(name + "BreakerOpened");
+        } else if (next == State.CLOSED) {
+            Arrays.fill(outcomes, false);
+            outcomeCount = 0;
+            outcomeIndex = 0;
+            failures = 0;
+        }
+    }
+
+    /**
+     * One admitted request. Each call made through it counts towards the breaker
+     * and the latency samples; the limiter sees the request once, on
+     * {@link #close()}, as failed if any of its calls failed.
+     */
+    public final class Permit {
+        private final boolean probe;
+        private boolean failed;
+        private boolean closed;
+
+        private Permit(boolean probe) {
+            this.probe = probe;
+        }
+
+        public <T> CompletableFuture<T> call(Function<Duration, CompletableFuture<T>> call, Predicate<T> isFailure) {
+            long start = System.nanoTime();
+            CompletableFuture<T> future;
+            try {
+                future = call.apply(timeout());
+            } catch (RuntimeException e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+            return future.whenComplete((result, error) -> {
+                boolean callFailed = error != null || isFailure.test(result);
+                synchronized (DependencyGuard.this) {
+                    recordLatency(callFailed, (System.nanoTime() - start) / 1_000_000);
+                    recordOutcome(callFailed);
+                    if (callFailed) failed = true;
+                }
+            });
+        }
+
+        /** Frees the slot; call once every call made through the permit has completed. */
+        public void close() {
+            synchronized (DependencyGuard.this) {
+                if (closed) return;
+                closed = true;
+                release(failed, probe);
+            }
+        }
+    }
+
+    private <T> CompletableFuture<T> reject(String reason) {
+        metrics.count(name + "CallRejected");
+        return CompletableFuture.failedFuture(new RejectedExecutionException(name + " call rejected: " + reason));
+    }
+
+    private static int envInt(String name, int defaultValue) {
+        String value = System.getenv(name);
+        return value != null && !value.isBlank() ? Integer.parseInt(value) : defaultValue;
+    }
+}
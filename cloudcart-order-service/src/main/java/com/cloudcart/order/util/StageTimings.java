@@ -0,0 +1,64 @@
+package com.cloudcart.order.util;
+
+import com.cloudcart.common.util.MetricsContext;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Wall-clock breakdown of one request. Each stage is recorded as a
+ * {@code <Stage>Latency} metric and as a {@code <stage>Ms} field for the
+ * request's final log line. Downstream calls made inside a stage, which may
+ * overlap, are recorded as a {@code <Call>Latency} metric per call. The log
+ * gets their count and the slowest one.
+ *
+ * Calls complete on HttpClient threads, so recording is synchronized.
+ */
+public class StageTimings {
+
+    private final MetricsContext metrics;
+    private final Map<String, Long> stages = new LinkedHashMap<>();
+    // call name → {count, slowest millis}
+    private final Map<String, long[]> calls = new LinkedHashMap<>();
+
+    public StageTimings(MetricsContext metrics) {
+        this.metrics = metrics;
+    }
+
+    /** Records the time since {@code startNanos} as a stage and returns now, the start of the next one. */
+    public long stage(String name, long startNanos) {
+        long now = System.nanoTime();
+        long millis = (now - startNanos) / 1_000_000;
+        metrics.time(metricName(name), millis);
+        synchronized (this) {
+            stages.merge(name, millis, Long::sum);
+        }
+        return now;
+    }
+
+    /** Records one downstream call started at {@code startNanos}. */
+    public void call(String name, long startNanos) {
+        long millis = (System.nanoTime() - startNanos) / 1_000_000;
+        metrics.time(metricName(name), millis);
+        synchronized (this) {
+            long[] stats = calls.computeIfAbsent(name, n -> new long[2]);
+            stats[0]++;
+            stats[1] = Math.max(stats[1], millis);
+        }
+    }
+
+    /** Log fields, e.g. {@code validationMs}, {@code catalogReserveCalls}, {@code catalogReserveMaxMs}. */
+    public synchronized Map<String, Object> toLogFields() {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        stages.forEach((name, millis) -> fields.put(name + "Ms", millis));
+        calls.forEach((name, stats) -> {
+            fields.put(name + "Calls", stats[0]);
+            fields.put(name + "MaxMs", stats[1]);
+        });
+        return fields;
+    }
+
+    private static String metricName(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1) + "Latency";
+    }
+}
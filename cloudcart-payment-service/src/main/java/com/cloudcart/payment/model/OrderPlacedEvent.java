@@ -1,12 +1,18 @@
 package com.cloudcart.payment.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
 import java.util.List;
 
+// Tolerates fields added by newer order-service versions
+@JsonIgnoreProperties(ignoreUnknown = true)
 public class OrderPlacedEvent {
     private String orderId;
     private String userId;
     private List<OrderItem> items;
     private double totalAmount;
+    private String correlationId;
+    private String placedAt;
 
     public OrderPlacedEvent() {}
 
@@ -21,4 +27,10 @@ public class OrderPlacedEvent {
 
     public double getTotalAmount() { return totalAmount; }
     public void setTotalAmount(double totalAmount) { this.totalAmount = totalAmount; }
+
+    public String getCorrelationId() { return correlationId; }
+    public void setCorrelationId(String correlationId) { this.correlationId = correlationId; }
+
+    public String getPlacedAt() { return placedAt; }
+    public void setPlacedAt(String placedAt) { this.placedAt = placedAt; }
 }
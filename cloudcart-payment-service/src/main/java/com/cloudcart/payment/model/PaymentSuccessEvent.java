@@ -7,6 +7,9 @@ public class PaymentSuccessEvent {
     private String userId;
     private List<OrderItem> items;
     private double totalAmount;
+    private String correlationId;
+    private String placedAt;
+    private String paidAt;
 
     public PaymentSuccessEvent() {}
 
@@ -28,4 +31,13 @@ public class PaymentSuccessEvent {
 
     public double getTotalAmount() { return totalAmount; }
     public void setTotalAmount(double totalAmount) { this.totalAmount = totalAmount; }
+
+    public String getCorrelationId() { return correlationId; }
+    public void setCorrelationId(String correlationId) { this.correlationId = correlationId; }
+
+    public String getPlacedAt() { return placedAt; }
+    public void setPlacedAt(String placedAt) { this.placedAt = placedAt; }
+
+    public String getPaidAt() { return paidAt; }
+    public void setPaidAt(String paidAt) { this.paidAt = paidAt; }
 }
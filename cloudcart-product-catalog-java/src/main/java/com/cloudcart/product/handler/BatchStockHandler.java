@@ -0,0 +1,120 @@
+package com.cloudcart.product.handler;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.cloudcart.common.crac.Priming;
+import com.cloudcart.product.repository.ProductRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.crac.Resource;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * POST /products/stock — multi-product counterpart of PATCH /products/{id}/stock.
+ * Body: {"reserve":[{"productId":"p1","qty":2},...]} (all-or-nothing, 409 lists every
+ * short product) or {"release":[...]} (increment).
+ */
+public class BatchStockHandler implements RequestHandler<Map<String, Object>, Map<String, Object>>, Resource {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final ProductRepository REPOSITORY = new ProductRepository();
+
+    public BatchStockHandler() {
+        Priming.register(this);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> handleRequest(Map<String, Object> input, Context context) {
+        try {
+            String body = (String) input.get("body");
+            Map<String, Object> bodyMap = MAPPER.readValue(body, Map.class);
+
+            String operation;
+            if (bodyMap.containsKey("reserve")) {
+                operation = "reserve";
+            } else if (bodyMap.containsKey("release")) {
+                operation = "release";
+            } else {
+                return response(400, "{\"error\":\"Body must contain 'reserve' or 'release'\"}");
+            }
+
+            Object linesObj = bodyMap.get(operation);
+            if (!(linesObj instanceof List) || ((List<?>) linesObj).isEmpty()) {
+                return response(400, "{\"error\":\"" + operation + " must be a non-empty list\"}");
+            }
+
+            // Duplicate productIds are summed: a transaction may touch each item only once
+            Map<String, Integer> quantities = new LinkedHashMap<>();
+            List<String> errors = new ArrayList<>();
+            for (Object lineObj : (List<Object>) linesObj) {
+                Map<String, Object> line = lineObj instanceof Map ? (Map<String, Object>) lineObj : Map.of();
+                Object productId = line.get("productId");
+                Object qty = line.get("qty");
+                if (!(productId instanceof String) || ((String) productId).isBlank()) {
+                    errors.add("productId is required for each item");
+                } else if (!(qty instanceof Number) || ((Number) qty).intValue() < 1) {
+                    errors.add("qty must be >= 1 for productId: " + productId);
+                } else {
+                    quantities.merge((String) productId, ((Number) qty).intValue(), Integer::sum);
+                }
+            }
+            if (!errors.isEmpty()) {
+                return response(400, MAPPER.writeValueAsString(
+                        Map.of("error", "Validation failed", "details", errors)));
+            }
+
+            if ("reserve".equals(operation)) {
+                List<String> insufficient = REPOSITORY.reserveStockBatch(quantities);
+                if (!insufficient.isEmpty()) {
+                    List<Map<String, String>> items = new ArrayList<>();
+                    for (String productId : insufficient) {
+                        items.add(Map.of("productId", productId, "reason", "insufficient stock"));
+                    }
+                    return response(409, MAPPER.writeValueAsString(
+                            Map.of("error", "Insufficient stock", "items", items)));
+                }
+                return response(200, "{\"message\":\"Stock reserved\"}");
+            }
+
+            List<String> notFound = REPOSITORY.releaseStockBatch(quantities);
+            if (!notFound.isEmpty()) {
+                return response(200, MAPPER.writeValueAsString(
+                        Map.of("message", "Stock released", "notFound", notFound)));
+            }
+            return response(200, "{\"message\":\"Stock released\"}");
+        } catch (Exception e) {
+            context.getLogger().log("Error in BatchStockHandler: " + e.getMessage());
+            return response(500, "{\"error\":\"Failed to update stock\"}");
+        }
+    }
+
+    private Map<String, Object> response(int statusCode, String body) {
+        return Map.of(
+            "statusCode", statusCode,
+            "headers", Map.of("Content-Type", "application/json"),
+            "body", body
+        );
+    }
+
+    @Override
+    public void beforeCheckpoint(org.crac.Context<? extends Resource> context) {
+        Priming.run("serialization", () -> Priming.roundTrip(MAPPER, Map.of("primed", true)));
+        dryRun();
+    }
+
+    @Override
+    public void afterRestore(org.crac.Context<? extends Resource> context) {
+        dryRun();
+    }
+
+    // Read-only call that warms the SDK client and its connection
+    private void dryRun() {
+        Priming.run("dry-run", () -> {
+            REPOSITORY.getProductById(Priming.DRY_RUN_ID);
+        });
+    }
+}
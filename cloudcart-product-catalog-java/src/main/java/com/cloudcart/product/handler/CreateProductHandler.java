@@ -2,20 +2,26 @@ package com.cloudcart.product.handler;
 
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.cloudcart.common.crac.Priming;
 import com.cloudcart.product.model.Product;
 import com.cloudcart.product.repository.ProductRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.crac.Resource;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
-public class CreateProductHandler implements RequestHandler<Map<String, Object>, Map<String, Object>> {
+public class CreateProductHandler implements RequestHandler<Map<String, Object>, Map<String, Object>>, Resource {
 
     private static final ObjectMapper MAPPER = new ObjectMapper();
     private static final ProductRepository REPOSITORY = new ProductRepository();
 
+    public CreateProductHandler() {
+        Priming.register(this);
+    }
+
     @Override
     public Map<String, Object> handleRequest(Map<String, Object> input, Context context) {
         try {
@@ -53,4 +59,22 @@ public class CreateProductHandler implements RequestHandler<Map<String, Object>,
             "body", body
         );
     }
+
+    @Override
+    public void beforeCheckpoint(org.crac.Context<? extends Resource> context) {
+        Priming.run("serialization", () -> Priming.roundTrip(MAPPER, new Product()));
+        dryRun();
+    }
+
+    @Override
+    public void afterRestore(org.crac.Context<? extends Resource> context) {
+        dryRun();
+    }
+
+    // Read-only call that warms the SDK client and its connection
+    private void dryRun() {
+        Priming.run("dry-run", () -> {
+            REPOSITORY.getProductById(Priming.DRY_RUN_ID);
+        });
+    }
 }
@@ -2,17 +2,23 @@ package com.cloudcart.product.handler;
 
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.cloudcart.common.crac.Priming;
 import com.cloudcart.product.model.Product;
 import com.cloudcart.product.repository.ProductRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.crac.Resource;
 
 import java.util.Map;
 
-public class GetProductHandler implements RequestHandler<Map<String, Object>, Map<String, Object>> {
+public class GetProductHandler implements RequestHandler<Map<String, Object>, Map<String, Object>>, Resource {
 
     private final ProductRepository repository = new ProductRepository();
     private final ObjectMapper mapper = new ObjectMapper();
 
+    public GetProductHandler() {
+        Priming.register(this);
+    }
+
     @Override
     public Map<String, Object> handleRequest(Map<String, Object> input, Context context) {
         try {
@@ -36,4 +42,22 @@ public class GetProductHandler implements RequestHandler<Map<String, Object>, Ma
             "body", body
         );
     }
+
+    @Override
+    public void beforeCheckpoint(org.crac.Context<? extends Resource> context) {
+        Priming.run("serialization", () -> Priming.roundTrip(mapper, new Product()));
+        dryRun();
+    }
+
+    @Override
+    public void afterRestore(org.crac.Context<? extends Resource> context) {
+        dryRun();
+    }
+
+    // Read-only call that warms the SDK client and its connection
+    private void dryRun() {
+        Priming.run("dry-run", () -> {
+            repository.getProductById(Priming.DRY_RUN_ID);
+        });
+    }
 }
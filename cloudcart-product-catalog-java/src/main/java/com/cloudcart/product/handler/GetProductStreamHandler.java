@@ -0,0 +1,11 @@
+package com.cloudcart.product.handler;
+
+import com.cloudcart.common.api.StreamingApiHandler;
+
+/** Streaming entry point for GET /products/{id}. */
+public class GetProductStreamHandler extends StreamingApiHandler {
+
+    public GetProductStreamHandler() {
+        super(new GetProductHandler());
+    }
+}
@@ -2,16 +2,23 @@ package com.cloudcart.product.handler;
 
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.cloudcart.common.crac.Priming;
+import com.cloudcart.product.model.Product;
 import com.cloudcart.product.repository.ProductRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.crac.Resource;
 
 import java.util.*;
 
-public class ListProductsHandler implements RequestHandler<Map<String, Object>, Map<String, Object>> {
+public class ListProductsHandler implements RequestHandler<Map<String, Object>, Map<String, Object>>, Resource {
 
     private static final ProductRepository REPOSITORY = new ProductRepository();
     private static final ObjectMapper MAPPER = new ObjectMapper();
 
+    public ListProductsHandler() {
+        Priming.register(this);
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     public Map<String, Object> handleRequest(Map<String, Object> input, Context context) {
@@ -51,4 +58,22 @@ public class ListProductsHandler implements RequestHandler<Map<String, Object>,
             "body", body
         );
     }
+
+    @Override
+    public void beforeCheckpoint(org.crac.Context<? extends Resource> context) {
+        Priming.run("serialization", () -> Priming.roundTrip(MAPPER, new Product()));
+        dryRun();
+    }
+
+    @Override
+    public void afterRestore(org.crac.Context<? extends Resource> context) {
+        dryRun();
+    }
+
+    // Read-only call that warms the SDK client and its connection
+    private void dryRun() {
+        Priming.run("dry-run", () -> {
+            REPOSITORY.getProductById(Priming.DRY_RUN_ID);
+        });
+    }
 }
@@ -0,0 +1,11 @@
+package com.cloudcart.product.handler;
+
+import com.cloudcart.common.api.StreamingApiHandler;
+
+/** Streaming entry point for GET /products. */
+public class ListProductsStreamHandler extends StreamingApiHandler {
+
+    public ListProductsStreamHandler() {
+        super(new ListProductsHandler());
+    }
+}
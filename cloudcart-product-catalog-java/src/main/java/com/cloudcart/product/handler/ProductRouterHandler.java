@@ -0,0 +1,40 @@
+package com.cloudcart.product.handler;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+
+import java.util.Map;
+
+/**
+ * Serves the whole catalog API from one function (cloudcart-router-template.yaml).
+ * The route table maps "METHOD resource" to the existing handlers and is built
+ * when the class initialises, so under SnapStart it is already in the snapshot.
+ */
+public class ProductRouterHandler implements RequestHandler<Map<String, Object>, Map<String, Object>> {
+
+    private static final Map<String, RequestHandler<Map<String, Object>, Map<String, Object>>> ROUTES = Map.of(
+            "GET /products", new ListProductsHandler(),
+            "POST /products", new CreateProductHandler(),
+            "POST /products/stock", new BatchStockHandler(),
+            "GET /products/{id}", new GetProductHandler(),
+            "PATCH /products/{id}/stock", new UpdateStockHandler()
+    );
+
+    @Override
+    public Map<String, Object> handleRequest(Map<String, Object> input, Context context) {
+        String route = input.get("httpMethod") + " " + input.get("resource");
+        RequestHandler<Map<String, Object>, Map<String, Object>> handler = ROUTES.get(route);
+        if (handler == null) {
+            return response(404, "{\"error\":\"No route for " + route + "\"}");
+        }
+        return handler.handleRequest(input, context);
+    }
+
+    private Map<String, Object> response(int statusCode, String body) {
+        return Map.of(
+            "statusCode", statusCode,
+            "headers", Map.of("Content-Type", "application/json"),
+            "body", body
+        );
+    }
+}
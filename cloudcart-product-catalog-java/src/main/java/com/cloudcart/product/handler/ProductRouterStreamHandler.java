@@ -0,0 +1,11 @@
+package com.cloudcart.product.handler;
+
+import com.cloudcart.common.api.StreamingApiHandler;
+
+/** {@link ProductRouterHandler} behind the streaming event reader and response writer. */
+public class ProductRouterStreamHandler extends StreamingApiHandler {
+
+    public ProductRouterStreamHandler() {
+        super(new ProductRouterHandler());
+    }
+}
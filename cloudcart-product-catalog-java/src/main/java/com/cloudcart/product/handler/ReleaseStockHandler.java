@@ -0,0 +1,156 @@
+package com.cloudcart.product.handler;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.cloudcart.common.crac.Priming;
+import com.cloudcart.common.util.JsonLogger;
+import com.cloudcart.common.util.MetricsContext;
+import com.cloudcart.common.util.MetricsEmitter;
+import com.cloudcart.product.model.StockReleaseEvent;
+import com.cloudcart.product.repository.ProductNotFoundException;
+import com.cloudcart.product.repository.ProductRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.crac.Resource;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * SQS consumer for StockReleaseQueueDev: stock handed back by order rollbacks
+ * and failed payments (see StockReleasePublisher). The batch is grouped by
+ * product and each product's releases are applied as one ADD update, together
+ * with a ledger marker per release (ProductRepository.addStockOnce). The queue
+ * delivers at least once, so a release that was already applied is skipped.
+ * If a product's update fails, every record that contributed to it is reported
+ * in batchItemFailures; the other products of the batch are unaffected.
+ */
+public class ReleaseStockHandler implements RequestHandler<Map<String, Object>, Map<String, Object>>, Resource {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final ProductRepository REPOSITORY = new ProductRepository();
+    private static final MetricsEmitter METRICS = new MetricsEmitter("CloudCart/Products");
+
+    public ReleaseStockHandler() {
+        Priming.register(this);
+    }
+
+    @Override
+    public Map<String, Object> handleRequest(Map<String, Object> input, Context context) {
+        MetricsContext metrics = METRICS.begin()
+                .dimension("FunctionName", context != null ? context.getFunctionName() : null);
+        JsonLogger.buffer();
+        try {
+            return processReleases(input, metrics);
+        } finally {
+            METRICS.end();
+            JsonLogger.flush();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> processReleases(Map<String, Object> input, MetricsContext metrics) {
+        JsonLogger logger = new JsonLogger("product-catalog", null);
+        List<Map<String, String>> failedItems = new ArrayList<>();
+
+        List<Map<String, Object>> records = (List<Map<String, Object>>) input.get("Records");
+        if (records == null) {
+            logger.info("No records in SQS event");
+            return buildBatchResponse(failedItems);
+        }
+
+        // productId → releaseId → quantity, and the messages behind each product's releases
+        Map<String, Map<String, Integer>> releases = new LinkedHashMap<>();
+        Map<String, List<String>> messageIds = new HashMap<>();
+        for (Map<String, Object> record : records) {
+            String messageId = (String) record.get("messageId");
+            try {
+                StockReleaseEvent event = MAPPER.readValue((String) record.get("body"), StockReleaseEvent.class);
+                if (event.getProductId() == null || event.getProductId().isBlank() || event.getQuantity() < 1) {
+                    throw new IllegalArgumentException("productId and a quantity >= 1 are required");
+                }
+                // Messages from before releaseId existed are deduplicated by messageId
+                String releaseId = event.getReleaseId() != null ? event.getReleaseId()
+                        : messageId != null ? messageId : UUID.randomUUID().toString();
+                releases.computeIfAbsent(event.getProductId(), p -> new LinkedHashMap<>())
+                        .putIfAbsent(releaseId, event.getQuantity());
+                if (messageId != null) {
+                    messageIds.computeIfAbsent(event.getProductId(), p -> new ArrayList<>()).add(messageId);
+                }
+            } catch (Exception e) {
+                // Malformed messages go to the DLQ after maxReceiveCount attempts
+                logger.error("Invalid stock release record",
+                        "messageId", messageId != null ? messageId : "unknown",
+                        "error", String.valueOf(e.getMessage()));
+                metrics.count("StockReleaseError");
+                if (messageId != null) failedItems.add(Map.of("itemIdentifier", messageId));
+            }
+        }
+
+        for (Map.Entry<String, Map<String, Integer>> release : releases.entrySet()) {
+            String productId = release.getKey();
+            Map<String, Integer> byReleaseId = release.getValue();
+            long start = System.nanoTime();
+            try {
+                List<String> duplicates = REPOSITORY.addStockOnce(productId, byReleaseId);
+                int quantity = 0;
+                for (Map.Entry<String, Integer> entry : byReleaseId.entrySet()) {
+                    if (!duplicates.contains(entry.getKey())) quantity += entry.getValue();
+                }
+                if (!duplicates.isEmpty()) {
+                    logger.info("Stock releases already applied, skipped",
+                            "productId", productId, "releases", duplicates.size());
+                    metrics.count("StockReleaseDuplicate", duplicates.size());
+                }
+                metrics.count("StockReleased", quantity);
+                logger.sampled().info("Stock released",
+                        "productId", productId,
+                        "quantity", quantity,
+                        "messages", messageIds.getOrDefault(productId, List.of()).size());
+            } catch (ProductNotFoundException e) {
+                // Deleted product: nothing to hand the stock back to, so don't retry
+                int quantity = byReleaseId.values().stream().mapToInt(Integer::intValue).sum();
+                logger.error("Product not found, stock release dropped",
+                        "productId", productId, "quantity", quantity);
+                metrics.count("StockReleaseProductMissing");
+            } catch (Exception e) {
+                logger.error("Failed to release stock",
+                        "productId", productId, "error", String.valueOf(e.getMessage()));
+                metrics.count("StockReleaseError");
+                for (String messageId : messageIds.getOrDefault(productId, List.of())) {
+                    failedItems.add(Map.of("itemIdentifier", messageId));
+                }
+            } finally {
+                metrics.timeSince("StockReleaseLatency", start);
+            }
+        }
+        return buildBatchResponse(failedItems);
+    }
+
+    private Map<String, Object> buildBatchResponse(List<Map<String, String>> failedItems) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("batchItemFailures", failedItems);
+        return response;
+    }
+
+    @Override
+    public void beforeCheckpoint(org.crac.Context<? extends Resource> context) {
+        Priming.run("serialization", () -> Priming.roundTrip(MAPPER, new StockReleaseEvent()));
+        dryRun();
+    }
+
+    @Override
+    public void afterRestore(org.crac.Context<? extends Resource> context) {
+        dryRun();
+    }
+
+    // Read-only call that warms the SDK client and its connection
+    private void dryRun() {
+        Priming.run("dry-run", () -> {
+            REPOSITORY.getProductById(Priming.DRY_RUN_ID);
+        });
+    }
+}
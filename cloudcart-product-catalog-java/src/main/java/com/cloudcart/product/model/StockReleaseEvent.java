@@ -0,0 +1,34 @@
+package com.cloudcart.product.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+// One product of one order handed back through StockReleaseQueueDev
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class StockReleaseEvent {
+    private String releaseId;
+    private String orderId;
+    private String correlationId;
+    private String productId;
+    private int quantity;
+    private String reason;
+
+    public StockReleaseEvent() {}
+
+    public String getReleaseId() { return releaseId; }
+    public void setReleaseId(String releaseId) { this.releaseId = releaseId; }
+
+    public String getOrderId() { return orderId; }
+    public void setOrderId(String orderId) { this.orderId = orderId; }
+
+    public String getCorrelationId() { return correlationId; }
+    public void setCorrelationId(String correlationId) { this.correlationId = correlationId; }
+
+    public String getProductId() { return productId; }
+    public void setProductId(String productId) { this.productId = productId; }
+
+    public int getQuantity() { return quantity; }
+    public void setQuantity(int quantity) { this.quantity = quantity; }
+
+    public String getReason() { return reason; }
+    public void setReason(String reason) { this.reason = reason; }
+}
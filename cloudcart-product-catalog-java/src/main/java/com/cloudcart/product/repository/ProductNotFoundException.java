@@ -0,0 +1,9 @@
+package com.cloudcart.product.repository;
+
+/** The product a stock operation targets does not exist in PRODUCTS_TABLE. */
+public class ProductNotFoundException extends RuntimeException {
+
+    public ProductNotFoundException(String productId) {
+        super("Product not found: " + productId);
+    }
+}
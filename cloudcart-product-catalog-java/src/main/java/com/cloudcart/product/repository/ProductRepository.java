@@ -1,36 +1,54 @@
 package com.cloudcart.product.repository;
 
+import com.cloudcart.common.aws.AwsClients;
 import com.cloudcart.product.model.Product;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
-import software.amazon.awssdk.services.dynamodb.DynamoDbClientBuilder;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.CancellationReason;
+import software.amazon.awssdk.services.dynamodb.model.ConditionCheck;
 import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.Put;
 import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
 import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
 import software.amazon.awssdk.services.dynamodb.model.PutItemResponse;
 import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+import software.amazon.awssdk.services.dynamodb.model.Update;
 import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
-import java.net.URI;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
 
 
 public class ProductRepository {
 
+    // DynamoDB caps a single TransactWriteItems call at 100 actions
+    private static final int TRANSACT_MAX_ITEMS = 100;
+    // Ledger entries outlive any message: SQS retains messages for at most 14 days
+    private static final long RELEASE_LEDGER_TTL_SECONDS = 15 * 86400;
+    private static final int MAX_RELEASE_ATTEMPTS = 3;
+
     private final DynamoDbClient dynamoDbClient;
     private final String tableName = System.getenv("PRODUCTS_TABLE");
+    // Null unless STOCK_SHARDS_TABLE is set; products then opt in to sharding individually
+    private final StockShardRepository stockShards;
+    // Null unless STOCK_RELEASE_LEDGER_TABLE is set; see addStockOnce
+    private final String releaseLedgerTable = System.getenv("STOCK_RELEASE_LEDGER_TABLE");
 
     public ProductRepository() {
-        DynamoDbClientBuilder builder = DynamoDbClient.builder();
-        String endpointUrl = System.getenv("AWS_ENDPOINT_URL");
-        if (endpointUrl != null && !endpointUrl.isEmpty()) {
-            builder.endpointOverride(URI.create(endpointUrl));
-        }
-        this.dynamoDbClient = builder.build();
+        this.dynamoDbClient = AwsClients.dynamoDb();
+        String shardsTable = System.getenv("STOCK_SHARDS_TABLE");
+        this.stockShards = shardsTable != null && !shardsTable.isEmpty()
+                ? new StockShardRepository(dynamoDbClient, tableName, shardsTable)
+                : null;
     }
  
     public void saveProduct(Product product) {
@@ -73,6 +91,7 @@ public Product getProductById(String productId) {
     product.setStock(Integer.parseInt(returnedItem.get("stock").n()));
     product.setCategory(returnedItem.get("category").s());
     product.setImageUrl(returnedItem.get("imageUrl").s());
+    addShardedStock(product, returnedItem);
 
     return product;
     }
@@ -99,6 +118,7 @@ public Product getProductById(String productId) {
             product.setStock(Integer.parseInt(item.get("stock").n()));
             product.setCategory(item.get("category").s());
             product.setImageUrl(item.get("imageUrl").s());
+            addShardedStock(product, item);
             productList.add(product);
         }
     
@@ -111,6 +131,14 @@ public Product getProductById(String productId) {
     }
 
     public void updateStock(String productId, int stock) {
+        if (stockShards != null) {
+            stockShards.invalidate(productId);
+            int shards = stockShards.shardCount(productId);
+            if (shards > 1) {
+                stockShards.redistribute(productId, shards, (long) stock);
+                return;
+            }
+        }
         Map<String, AttributeValue> key = new HashMap<>();
         key.put("productID", AttributeValue.fromS(productId));
 
@@ -124,8 +152,34 @@ public Product getProductById(String productId) {
         dynamoDbClient.updateItem(request);
     }
 
+    public boolean supportsStockShards() {
+        return stockShards != null;
+    }
+
+    /**
+     * Splits the product's stock evenly over {@code shards} shard rows, or moves it
+     * back onto the product item for 0 or 1. Re-applying the current count
+     * rebalances shards that have drifted apart.
+     */
+    public void setStockShards(String productId, int shards) {
+        stockShards.redistribute(productId, shards, null);
+    }
+
     // Returns true if reservation succeeded, false if insufficient stock.
     public boolean reserveStock(String productId, int qty) {
+        if (stockShards == null) return reserveItemStock(productId, qty);
+
+        int shards = stockShards.shardCount(productId);
+        boolean reserved = shards > 1 ? stockShards.reserve(productId, shards, qty) : reserveItemStock(productId, qty);
+        if (reserved) return true;
+        // The cached shard count may be stale; re-check once before reporting short
+        stockShards.invalidate(productId);
+        int current = stockShards.shardCount(productId);
+        if (current == shards) return false;
+        return current > 1 ? stockShards.reserve(productId, current, qty) : reserveItemStock(productId, qty);
+    }
+
+    private boolean reserveItemStock(String productId, int qty) {
         try {
             dynamoDbClient.updateItem(UpdateItemRequest.builder()
                     .tableName(tableName)
@@ -141,6 +195,10 @@ public Product getProductById(String productId) {
     }
 
     public void releaseStock(String productId, int qty) {
+        if (stockShards != null) {
+            int shards = stockShards.shardCount(productId);
+            if (shards > 1 && stockShards.release(productId, shards, qty)) return;
+        }
         dynamoDbClient.updateItem(UpdateItemRequest.builder()
                 .tableName(tableName)
                 .key(Map.of("productID", AttributeValue.fromS(productId)))
@@ -149,4 +207,273 @@ public Product getProductById(String productId) {
                 .build());
     }
 
+    /**
+     * Adds qty to a product's stock with one ADD update, or to a random shard of a
+     * sharded product. Returns false if the product does not exist; unlike a plain
+     * ADD, no stock-only item is created for it.
+     */
+    public boolean addStock(String productId, int qty) {
+        if (stockShards != null) {
+            int shards = stockShards.shardCount(productId);
+            if (shards > 1 && stockShards.release(productId, shards, qty)) return true;
+        }
+        try {
+            dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                    .tableName(tableName)
+                    .key(Map.of("productID", AttributeValue.fromS(productId)))
+                    .updateExpression("ADD stock :qty")
+                    .conditionExpression("attribute_exists(productID)")
+                    .expressionAttributeValues(Map.of(":qty", AttributeValue.fromN(String.valueOf(qty))))
+                    .build());
+            return true;
+        } catch (ConditionalCheckFailedException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Adds each releaseId → qty entry to the product's stock at most once. Each
+     * release writes a marker to STOCK_RELEASE_LEDGER_TABLE in the same
+     * transaction as the ADD, so a redelivered message, or a retry after a call
+     * that committed but timed out, finds its marker and adds nothing. Returns the
+     * releaseIds skipped as already applied; throws ProductNotFoundException if
+     * the product does not exist. Without a ledger table this is a plain addStock.
+     */
+    public List<String> addStockOnce(String productId, Map<String, Integer> releases) {
+        List<String> duplicates = new ArrayList<>();
+        if (releaseLedgerTable == null || releaseLedgerTable.isEmpty()) {
+            int total = releases.values().stream().mapToInt(Integer::intValue).sum();
+            if (!addStock(productId, total)) throw new ProductNotFoundException(productId);
+            return duplicates;
+        }
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(releases.entrySet());
+        // One action is the stock update, the rest are markers
+        for (int i = 0; i < entries.size(); i += TRANSACT_MAX_ITEMS - 1) {
+            Map<String, Integer> pending = new LinkedHashMap<>();
+            for (Map.Entry<String, Integer> entry : entries.subList(i, Math.min(i + TRANSACT_MAX_ITEMS - 1, entries.size()))) {
+                pending.put(entry.getKey(), entry.getValue());
+            }
+            duplicates.addAll(addLedgered(productId, pending));
+        }
+        return duplicates;
+    }
+
+    private List<String> addLedgered(String productId, Map<String, Integer> pending) {
+        List<String> duplicates = new ArrayList<>();
+        for (int attempt = 1; attempt <= MAX_RELEASE_ATTEMPTS; attempt++) {
+            int shards = shardCount(productId);
+            int total = pending.values().stream().mapToInt(Integer::intValue).sum();
+            List<String> releaseIds = new ArrayList<>(pending.keySet());
+            List<TransactWriteItem> actions = new ArrayList<>(releaseIds.size() + 1);
+            actions.add(TransactWriteItem.builder()
+                    .update(Update.builder()
+                            .tableName(shards > 1 ? stockShards.shardsTable() : tableName)
+                            .key(shards > 1
+                                    ? stockShards.shardKey(productId, ThreadLocalRandom.current().nextInt(shards))
+                                    : Map.of("productID", AttributeValue.fromS(productId)))
+                            .updateExpression("ADD stock :qty")
+                            .conditionExpression("attribute_exists(productID)")
+                            .expressionAttributeValues(Map.of(":qty", AttributeValue.fromN(String.valueOf(total))))
+                            .build())
+                    .build());
+            String expiresAt = String.valueOf(Instant.now().getEpochSecond() + RELEASE_LEDGER_TTL_SECONDS);
+            for (String releaseId : releaseIds) {
+                actions.add(TransactWriteItem.builder()
+                        .put(Put.builder()
+                                .tableName(releaseLedgerTable)
+                                .item(Map.of(
+                                        "releaseId", AttributeValue.fromS(releaseId),
+                                        "productID", AttributeValue.fromS(productId),
+                                        "quantity", AttributeValue.fromN(String.valueOf(pending.get(releaseId))),
+                                        "expiresAt", AttributeValue.fromN(expiresAt)))
+                                .conditionExpression("attribute_not_exists(releaseId)")
+                                .build())
+                        .build());
+            }
+            try {
+                dynamoDbClient.transactWriteItems(TransactWriteItemsRequest.builder()
+                        .transactItems(actions)
+                        .build());
+                return duplicates;
+            } catch (TransactionCanceledException e) {
+                // Reasons come back in action order: the stock update, then each marker
+                if (!e.hasCancellationReasons()) throw e;
+                List<CancellationReason> reasons = e.cancellationReasons();
+                if ("ConditionalCheckFailed".equals(reasons.get(0).code())) {
+                    // A missing shard means the product was just resharded; re-read and retry
+                    if (shards <= 1) throw new ProductNotFoundException(productId);
+                    stockShards.invalidate(productId);
+                }
+                for (int i = 1; i < reasons.size() && i <= releaseIds.size(); i++) {
+                    if ("ConditionalCheckFailed".equals(reasons.get(i).code())) {
+                        duplicates.add(releaseIds.get(i - 1));
+                        pending.remove(releaseIds.get(i - 1));
+                    }
+                }
+                if (pending.isEmpty()) return duplicates;
+                if (attempt == MAX_RELEASE_ATTEMPTS) throw e;
+            }
+        }
+        return duplicates;
+    }
+
+    /**
+     * Reserves every productId → qty entry all-or-nothing using TransactWriteItems,
+     * chunked to the transaction limit. Returns the productIds that lacked stock;
+     * an empty list means everything was reserved.
+     *
+     * Once a chunk fails, the remaining chunks run as ConditionCheck-only
+     * transactions so every short product is reported without reserving anything,
+     * and chunks already committed are released before returning.
+     */
+    public List<String> reserveStockBatch(Map<String, Integer> quantities) {
+        List<List<Map.Entry<String, Integer>>> chunks = chunk(quantities);
+        List<List<Map.Entry<String, Integer>>> committed = new ArrayList<>();
+        List<String> insufficient = new ArrayList<>();
+
+        try {
+            for (List<Map.Entry<String, Integer>> chunk : chunks) {
+                boolean checkOnly = !insufficient.isEmpty();
+                List<TransactWriteItem> actions = new ArrayList<>(chunk.size());
+                for (Map.Entry<String, Integer> entry : chunk) {
+                    actions.add(checkOnly ? stockCheck(entry.getKey(), entry.getValue())
+                                          : stockReserve(entry.getKey(), entry.getValue()));
+                }
+                try {
+                    dynamoDbClient.transactWriteItems(TransactWriteItemsRequest.builder()
+                            .transactItems(actions)
+                            .build());
+                    if (!checkOnly) committed.add(chunk);
+                } catch (TransactionCanceledException e) {
+                    List<String> failed = conditionFailures(e, chunk);
+                    if (failed.isEmpty()) throw e;
+                    insufficient.addAll(failed);
+                }
+            }
+        } catch (RuntimeException e) {
+            for (List<Map.Entry<String, Integer>> chunk : committed) releaseChunk(chunk);
+            throw e;
+        }
+
+        if (!insufficient.isEmpty()) {
+            for (List<Map.Entry<String, Integer>> chunk : committed) releaseChunk(chunk);
+        }
+        return insufficient;
+    }
+
+    /**
+     * Releases every productId → qty entry, chunked to the transaction limit.
+     * Returns the productIds that do not exist; those are skipped and the rest
+     * of their chunk is still released.
+     */
+    public List<String> releaseStockBatch(Map<String, Integer> quantities) {
+        List<String> notFound = new ArrayList<>();
+        for (List<Map.Entry<String, Integer>> chunk : chunk(quantities)) {
+            notFound.addAll(releaseChunk(chunk));
+        }
+        return notFound;
+    }
+
+    private List<String> releaseChunk(List<Map.Entry<String, Integer>> chunk) {
+        try {
+            transactRelease(chunk);
+            return List.of();
+        } catch (TransactionCanceledException e) {
+            List<String> missing = conditionFailures(e, chunk);
+            if (missing.isEmpty()) throw e;
+            List<Map.Entry<String, Integer>> remaining = new ArrayList<>();
+            for (Map.Entry<String, Integer> entry : chunk) {
+                if (!missing.contains(entry.getKey())) remaining.add(entry);
+            }
+            if (!remaining.isEmpty()) transactRelease(remaining);
+            return missing;
+        }
+    }
+
+    private void transactRelease(List<Map.Entry<String, Integer>> chunk) {
+        List<TransactWriteItem> actions = new ArrayList<>(chunk.size());
+        for (Map.Entry<String, Integer> entry : chunk) {
+            int shards = shardCount(entry.getKey());
+            actions.add(TransactWriteItem.builder()
+                    .update(Update.builder()
+                            .tableName(shards > 1 ? stockShards.shardsTable() : tableName)
+                            .key(shards > 1
+                                    ? stockShards.shardKey(entry.getKey(), ThreadLocalRandom.current().nextInt(shards))
+                                    : Map.of("productID", AttributeValue.fromS(entry.getKey())))
+                            .updateExpression("SET stock = stock + :qty")
+                            .conditionExpression("attribute_exists(productID)")
+                            .expressionAttributeValues(Map.of(":qty", AttributeValue.fromN(String.valueOf(entry.getValue()))))
+                            .build())
+                    .build());
+        }
+        dynamoDbClient.transactWriteItems(TransactWriteItemsRequest.builder()
+                .transactItems(actions)
+                .build());
+    }
+
+    private TransactWriteItem stockReserve(String productId, int qty) {
+        int shards = shardCount(productId);
+        return TransactWriteItem.builder()
+                .update(Update.builder()
+                        .tableName(shards > 1 ? stockShards.shardsTable() : tableName)
+                        .key(stockKey(productId, shards, qty))
+                        .updateExpression("SET stock = stock - :qty")
+                        .conditionExpression("stock >= :qty")
+                        .expressionAttributeValues(Map.of(":qty", AttributeValue.fromN(String.valueOf(qty))))
+                        .build())
+                .build();
+    }
+
+    private TransactWriteItem stockCheck(String productId, int qty) {
+        int shards = shardCount(productId);
+        return TransactWriteItem.builder()
+                .conditionCheck(ConditionCheck.builder()
+                        .tableName(shards > 1 ? stockShards.shardsTable() : tableName)
+                        .key(stockKey(productId, shards, qty))
+                        .conditionExpression("stock >= :qty")
+                        .expressionAttributeValues(Map.of(":qty", AttributeValue.fromN(String.valueOf(qty))))
+                        .build())
+                .build();
+    }
+
+    private int shardCount(String productId) {
+        return stockShards == null ? 0 : stockShards.shardCount(productId);
+    }
+
+    // Transactions target a single shard, so pick one that currently holds qty
+    private Map<String, AttributeValue> stockKey(String productId, int shards, int qty) {
+        return shards > 1
+                ? stockShards.shardKey(productId, stockShards.pickShard(productId, shards, qty))
+                : Map.of("productID", AttributeValue.fromS(productId));
+    }
+
+    // Available stock of a sharded product is its item's stock plus every shard
+    private void addShardedStock(Product product, Map<String, AttributeValue> item) {
+        if (stockShards != null && StockShardRepository.shardCountOf(item) > 1) {
+            product.setStock((int) (product.getStock() + stockShards.totalStock(product.getProductId())));
+        }
+    }
+
+    // Cancellation reasons come back in the same order as the transaction's actions
+    private List<String> conditionFailures(TransactionCanceledException e, List<Map.Entry<String, Integer>> chunk) {
+        List<String> failed = new ArrayList<>();
+        if (!e.hasCancellationReasons()) return failed;
+        List<CancellationReason> reasons = e.cancellationReasons();
+        for (int i = 0; i < reasons.size() && i < chunk.size(); i++) {
+            if ("ConditionalCheckFailed".equals(reasons.get(i).code())) {
+                failed.add(chunk.get(i).getKey());
+            }
+        }
+        return failed;
+    }
+
+    private List<List<Map.Entry<String, Integer>>> chunk(Map<String, Integer> quantities) {
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(quantities.entrySet());
+        List<List<Map.Entry<String, Integer>>> chunks = new ArrayList<>();
+        for (int i = 0; i < entries.size(); i += TRANSACT_MAX_ITEMS) {
+            chunks.add(entries.subList(i, Math.min(i + TRANSACT_MAX_ITEMS, entries.size())));
+        }
+        return chunks;
+    }
+
 }
\ No newline at end of file
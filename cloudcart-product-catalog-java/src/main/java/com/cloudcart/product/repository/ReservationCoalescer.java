@@ -0,0 +1,113 @@
+package com.cloudcart.product.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Coalesces concurrent reservations for the same product into one conditional
+ * decrement.
+ *
+ * The first reservation for a product opens a window of STOCK_COALESCE_WINDOW_MS.
+ * Reservations that arrive for that product during the window join it. When the
+ * window closes, the first caller decrements the summed quantity once. If that
+ * passes the stock condition, every caller gets success. If it fails, each caller
+ * falls back to its own conditional decrement, so an order that still fits is
+ * never rejected because of another order it was batched with.
+ *
+ * A window of 0 (the default) reserves directly.
+ */
+public class ReservationCoalescer {
+
+    private final ProductRepository repository;
+    private final long windowMillis;
+    private final Map<String, Batch> open = new ConcurrentHashMap<>();
+
+    public ReservationCoalescer(ProductRepository repository) {
+        this(repository, windowFromEnv());
+    }
+
+    public ReservationCoalescer(ProductRepository repository, long windowMillis) {
+        this.repository = repository;
+        this.windowMillis = windowMillis;
+    }
+
+    // Returns true if reservation succeeded, false if insufficient stock.
+    public boolean reserve(String productId, int qty) {
+        if (windowMillis <= 0) return repository.reserveStock(productId, qty);
+
+        Pending mine = new Pending(qty);
+        Batch batch;
+        boolean leader;
+        while (true) {
+            batch = open.computeIfAbsent(productId, k -> new Batch());
+            synchronized (batch) {
+                if (batch.closed) continue;
+                batch.members.add(mine);
+                leader = batch.members.size() == 1;
+                break;
+            }
+        }
+
+        if (leader) flush(productId, batch);
+
+        Boolean result;
+        try {
+            result = mine.result.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+        // null means the summed decrement failed — try this caller's quantity alone
+        return result != null ? result : repository.reserveStock(productId, qty);
+    }
+
+    private void flush(String productId, Batch batch) {
+        try {
+            Thread.sleep(windowMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<Pending> members;
+        synchronized (batch) {
+            batch.closed = true;
+            members = new ArrayList<>(batch.members);
+        }
+        open.remove(productId, batch);
+
+        long total = 0;
+        for (Pending pending : members) total += pending.qty;
+        if (members.size() == 1 || total > Integer.MAX_VALUE) {
+            for (Pending pending : members) pending.result.complete(null);
+            return;
+        }
+
+        try {
+            boolean reserved = repository.reserveStock(productId, (int) total);
+            for (Pending pending : members) pending.result.complete(reserved ? Boolean.TRUE : null);
+        } catch (RuntimeException e) {
+            for (Pending pending : members) pending.result.completeExceptionally(e);
+        }
+    }
+
+    private static long windowFromEnv() {
+        String window = System.getenv("STOCK_COALESCE_WINDOW_MS");
+        return window != null && !window.isBlank() ? Long.parseLong(window) : 0;
+    }
+
+    private static final class Batch {
+        final List<Pending> members = new ArrayList<>();
+        boolean closed;
+    }
+
+    private static final class Pending {
+        final int qty;
+        final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        Pending(int qty) {
+            this.qty = qty;
+        }
+    }
+}
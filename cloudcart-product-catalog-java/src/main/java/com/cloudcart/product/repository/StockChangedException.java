@@ -0,0 +1,12 @@
+package com.cloudcart.product.repository;
+
+/**
+ * A stock rebalance lost its transaction to a concurrent reservation or
+ * release. Nothing was written; the caller can retry.
+ */
+public class StockChangedException extends RuntimeException {
+
+    public StockChangedException(String productId, Throwable cause) {
+        super("Stock changed during rebalance of " + productId, cause);
+    }
+}
@@ -0,0 +1,302 @@
+package com.cloudcart.product.repository;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.Delete;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.Put;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+import software.amazon.awssdk.services.dynamodb.model.Update;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Sharded stock for hot products.
+ *
+ * A sharded product carries "stockShards" = N on its product item, and its stock
+ * is split across N rows of STOCK_SHARDS_TABLE keyed (productID, shard). Each
+ * reservation decrements one randomly chosen shard, so concurrent reservations
+ * spread over N partition keys instead of serializing on one item.
+ *
+ * The product's available stock is always its own "stock" attribute plus the sum
+ * of its shards. A release that arrives on a container with a stale view of the
+ * sharding config still lands somewhere that gets counted.
+ */
+public class StockShardRepository {
+
+    // Keeps a rebalance (1 base update + old and new shard writes) well under the
+    // 100-action TransactWriteItems limit
+    public static final int MAX_SHARDS = 32;
+    private static final int MAX_SINGLE_SHARD_ATTEMPTS = 3;
+
+    private final DynamoDbClient dynamoDbClient;
+    private final String productsTable;
+    private final String shardsTable;
+    private final long cacheTtlMillis;
+    private final Map<String, CachedShardCount> shardCounts = new ConcurrentHashMap<>();
+
+    public StockShardRepository(DynamoDbClient dynamoDbClient, String productsTable, String shardsTable) {
+        this.dynamoDbClient = dynamoDbClient;
+        this.productsTable = productsTable;
+        this.shardsTable = shardsTable;
+        String ttl = System.getenv("STOCK_SHARD_CACHE_SECONDS");
+        this.cacheTtlMillis = (ttl != null && !ttl.isBlank() ? Long.parseLong(ttl) : 60) * 1000;
+    }
+
+    public static int shardCountOf(Map<String, AttributeValue> productItem) {
+        AttributeValue shards = productItem.get("stockShards");
+        return shards != null && shards.n() != null ? Integer.parseInt(shards.n()) : 0;
+    }
+
+    /**
+     * Number of shards for the product, or 0 if its stock lives on the product item.
+     * Cached per container for STOCK_SHARD_CACHE_SECONDS so hot products don't pay
+     * an extra read per reservation.
+     */
+    public int shardCount(String productId) {
+        CachedShardCount cached = shardCounts.get(productId);
+        if (cached != null && cached.expiresAtMillis > System.currentTimeMillis()) {
+            return cached.shards;
+        }
+        Map<String, AttributeValue> item = dynamoDbClient.getItem(GetItemRequest.builder()
+                .tableName(productsTable)
+                .key(Map.of("productID", AttributeValue.fromS(productId)))
+                .projectionExpression("stockShards")
+                .build()).item();
+        int shards = item == null ? 0 : shardCountOf(item);
+        shardCounts.put(productId, new CachedShardCount(shards, System.currentTimeMillis() + cacheTtlMillis));
+        return shards;
+    }
+
+    public void invalidate(String productId) {
+        shardCounts.remove(productId);
+    }
+
+    /** Sum of all shard rows for the product (strongly consistent). */
+    public long totalStock(String productId) {
+        long total = 0;
+        for (long stock : readShards(productId).values()) total += stock;
+        return total;
+    }
+
+    /**
+     * Takes qty from one randomly chosen shard, trying a few neighbours if that
+     * shard runs short. If no single shard holds qty, it takes qty from several
+     * shards in one transaction. Returns false if the shards together lack qty.
+     */
+    public boolean reserve(String productId, int shards, int qty) {
+        int start = ThreadLocalRandom.current().nextInt(shards);
+        for (int i = 0; i < Math.min(shards, MAX_SINGLE_SHARD_ATTEMPTS); i++) {
+            try {
+                dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                        .tableName(shardsTable)
+                        .key(shardKey(productId, (start + i) % shards))
+                        .updateExpression("SET stock = stock - :qty")
+                        .conditionExpression("stock >= :qty")
+                        .expressionAttributeValues(Map.of(":qty", AttributeValue.fromN(String.valueOf(qty))))
+                        .build());
+                return true;
+            } catch (ConditionalCheckFailedException e) {
+                // Shard short — try the next one
+            }
+        }
+        return reserveAcrossShards(productId, qty);
+    }
+
+    /**
+     * Adds qty to a random shard. Returns false if that shard no longer exists
+     * (the product was un-sharded meanwhile) so the caller can release to the
+     * product item instead.
+     */
+    public boolean release(String productId, int shards, int qty) {
+        try {
+            dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                    .tableName(shardsTable)
+                    .key(shardKey(productId, ThreadLocalRandom.current().nextInt(shards)))
+                    .updateExpression("SET stock = stock + :qty")
+                    .conditionExpression("attribute_exists(productID)")
+                    .expressionAttributeValues(Map.of(":qty", AttributeValue.fromN(String.valueOf(qty))))
+                    .build());
+            return true;
+        } catch (ConditionalCheckFailedException e) {
+            invalidate(productId);
+            return false;
+        }
+    }
+
+    /**
+     * Picks the shard a transactional reservation of qty should target: a random
+     * shard that currently holds at least qty, or any shard if none does (the
+     * transaction's condition then reports the product as short).
+     */
+    public int pickShard(String productId, int shards, int qty) {
+        List<Integer> eligible = new ArrayList<>();
+        for (Map.Entry<Integer, Long> shard : readShards(productId).entrySet()) {
+            if (shard.getValue() >= qty) eligible.add(shard.getKey());
+        }
+        return eligible.isEmpty()
+                ? ThreadLocalRandom.current().nextInt(shards)
+                : eligible.get(ThreadLocalRandom.current().nextInt(eligible.size()));
+    }
+
+    public String shardsTable() {
+        return shardsTable;
+    }
+
+    public Map<String, AttributeValue> shardKey(String productId, int shard) {
+        return Map.of(
+                "productID", AttributeValue.fromS(productId),
+                "shard", AttributeValue.fromN(String.valueOf(shard)));
+    }
+
+    /**
+     * Spreads the product's stock evenly over {@code newShards} shards; 0 or 1
+     * moves it all back onto the product item. The total is the current stock
+     * (product item + shards) unless {@code absoluteTotal} is given. Every old
+     * value is a transaction condition, so a concurrent reservation makes this
+     * fail with StockChangedException instead of losing an update. Throws
+     * ProductNotFoundException if the product does not exist.
+     */
+    public void redistribute(String productId, int newShards, Long absoluteTotal) {
+        Map<String, AttributeValue> product = dynamoDbClient.getItem(GetItemRequest.builder()
+                .tableName(productsTable)
+                .key(Map.of("productID", AttributeValue.fromS(productId)))
+                .consistentRead(true)
+                .build()).item();
+        if (product == null || product.isEmpty()) {
+            throw new ProductNotFoundException(productId);
+        }
+
+        int oldShards = shardCountOf(product);
+        String baseStock = product.containsKey("stock") ? product.get("stock").n() : "0";
+        Map<Integer, Long> old = readShards(productId);
+        long total = Long.parseLong(baseStock);
+        for (long stock : old.values()) total += stock;
+        if (absoluteTotal != null) total = absoluteTotal;
+        boolean sharded = newShards > 1;
+
+        List<TransactWriteItem> actions = new ArrayList<>();
+        Map<String, AttributeValue> baseValues = new HashMap<>();
+        baseValues.put(":oldStock", AttributeValue.fromN(baseStock));
+        baseValues.put(":stock", AttributeValue.fromN(sharded ? "0" : String.valueOf(total)));
+        String baseCondition = "stock = :oldStock AND ";
+        if (oldShards > 0) {
+            baseValues.put(":oldShards", AttributeValue.fromN(String.valueOf(oldShards)));
+            baseCondition += "stockShards = :oldShards";
+        } else {
+            baseCondition += "attribute_not_exists(stockShards)";
+        }
+        if (sharded) baseValues.put(":shards", AttributeValue.fromN(String.valueOf(newShards)));
+        actions.add(TransactWriteItem.builder().update(Update.builder()
+                .tableName(productsTable)
+                .key(Map.of("productID", AttributeValue.fromS(productId)))
+                .updateExpression(sharded ? "SET stock = :stock, stockShards = :shards" : "SET stock = :stock REMOVE stockShards")
+                .conditionExpression(baseCondition)
+                .expressionAttributeValues(baseValues)
+                .build()).build());
+
+        int shardCount = sharded ? newShards : 0;
+        for (int shard = 0; shard < shardCount; shard++) {
+            long amount = total / shardCount + (shard < total % shardCount ? 1 : 0);
+            Map<String, AttributeValue> item = new HashMap<>(shardKey(productId, shard));
+            item.put("stock", AttributeValue.fromN(String.valueOf(amount)));
+            Put.Builder put = Put.builder().tableName(shardsTable).item(item);
+            if (old.containsKey(shard)) {
+                put.conditionExpression("stock = :old")
+                   .expressionAttributeValues(Map.of(":old", AttributeValue.fromN(String.valueOf(old.get(shard)))));
+            } else {
+                put.conditionExpression("attribute_not_exists(productID)");
+            }
+            actions.add(TransactWriteItem.builder().put(put.build()).build());
+        }
+        for (Map.Entry<Integer, Long> shard : old.entrySet()) {
+            if (shard.getKey() < shardCount) continue;
+            actions.add(TransactWriteItem.builder().delete(Delete.builder()
+                    .tableName(shardsTable)
+                    .key(shardKey(productId, shard.getKey()))
+                    .conditionExpression("stock = :old")
+                    .expressionAttributeValues(Map.of(":old", AttributeValue.fromN(String.valueOf(shard.getValue()))))
+                    .build()).build());
+        }
+
+        try {
+            dynamoDbClient.transactWriteItems(TransactWriteItemsRequest.builder()
+                    .transactItems(actions)
+                    .build());
+        } catch (TransactionCanceledException e) {
+            throw new StockChangedException(productId, e);
+        } finally {
+            invalidate(productId);
+        }
+    }
+
+    // Fallback when no single shard holds qty: take it greedily from the fullest shards
+    private boolean reserveAcrossShards(String productId, int qty) {
+        Map<Integer, Long> shards = readShards(productId);
+        long available = 0;
+        for (long stock : shards.values()) available += stock;
+        if (available < qty) return false;
+
+        List<Map.Entry<Integer, Long>> fullestFirst = new ArrayList<>(shards.entrySet());
+        fullestFirst.sort(Map.Entry.<Integer, Long>comparingByValue(Comparator.reverseOrder()));
+        List<TransactWriteItem> actions = new ArrayList<>();
+        long remaining = qty;
+        for (Map.Entry<Integer, Long> shard : fullestFirst) {
+            if (remaining == 0) break;
+            long take = Math.min(remaining, shard.getValue());
+            if (take <= 0) continue;
+            actions.add(TransactWriteItem.builder().update(Update.builder()
+                    .tableName(shardsTable)
+                    .key(shardKey(productId, shard.getKey()))
+                    .updateExpression("SET stock = stock - :take")
+                    .conditionExpression("stock >= :take")
+                    .expressionAttributeValues(Map.of(":take", AttributeValue.fromN(String.valueOf(take))))
+                    .build()).build());
+            remaining -= take;
+        }
+        try {
+            dynamoDbClient.transactWriteItems(TransactWriteItemsRequest.builder()
+                    .transactItems(actions)
+                    .build());
+            return true;
+        } catch (TransactionCanceledException e) {
+            // Shards moved under us; report short rather than spin on a hot product
+            return false;
+        }
+    }
+
+    private Map<Integer, Long> readShards(String productId) {
+        Map<Integer, Long> shards = new TreeMap<>();
+        for (Map<String, AttributeValue> row : dynamoDbClient.query(QueryRequest.builder()
+                .tableName(shardsTable)
+                .keyConditionExpression("productID = :pid")
+                .expressionAttributeValues(Map.of(":pid", AttributeValue.fromS(productId)))
+                .consistentRead(true)
+                .build()).items()) {
+            shards.put(Integer.parseInt(row.get("shard").n()), Long.parseLong(row.get("stock").n()));
+        }
+        return shards;
+    }
+
+    private static final class CachedShardCount {
+        final int shards;
+        final long expiresAtMillis;
+
+        CachedShardCount(int shards, long expiresAtMillis) {
+            this.shards = shards;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.cloudcart.server;
+
+import com.cloudcart.cart.handler.AddToCartHandler;
+import com.cloudcart.cart.handler.ClearCartHandler;
+import com.cloudcart.cart.handler.RemoveFromCartHandler;
+import com.cloudcart.cart.handler.UpdateQuantityHandler;
+import com.cloudcart.cart.handler.ViewCartHandler;
+import com.cloudcart.common.aws.AwsClients;
+import com.cloudcart.common.util.JsonLogger;
+import com.cloudcart.order.handler.GetOrderHandler;
+import com.cloudcart.order.handler.ListOrdersHandler;
+import com.cloudcart.order.handler.OutboxRelayHandler;
+import com.cloudcart.order.handler.PlaceOrderHandler;
+import com.cloudcart.payment.handler.ProcessPaymentHandler;
+import com.cloudcart.product.handler.BatchStockHandler;
+import com.cloudcart.product.handler.CreateProductHandler;
+import com.cloudcart.product.handler.GetProductHandler;
+import com.cloudcart.product.handler.ListProductsHandler;
+import com.cloudcart.product.handler.ReleaseStockHandler;
+import com.cloudcart.product.handler.UpdateStockHandler;
+import com.cloudcart.server.http.ApiGatewayAdapter;
+import com.cloudcart.server.http.Route;
+import com.cloudcart.server.queue.InMemorySqsClient;
+import com.cloudcart.server.queue.SqsPoller;
+import com.cloudcart.shipment.handler.ProcessShipmentHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs every CloudCart handler in one long-lived JVM: the API routes behind an
+ * embedded HTTP server that serves each request on its own virtual thread, and
+ * the queue and outbox consumers as in-process pollers. Handlers, SDK clients,
+ * connection pools and caches are shared, and the JIT stays warm.
+ *
+ * All services read their usual environment variables (tables, queue URLs,
+ * PRODUCTS_API_URL pointing back at this server, ...). AWS_ENDPOINT_URL points
+ * the SDK at LocalStack. Server settings:
+ * - PORT: HTTP port (default 8080)
+ * - QUEUE_MODE: "sqs" (default) polls the queue URLs through the SDK; "memory"
+ *   swaps SQS for an in-process stand-in, so any distinct queue URLs will do
+ * - SQS_POLLERS: concurrent pollers per queue (default 2)
+ * - OUTBOX_POLL_MS: how often the outbox relay scans for pending events
+ *   (default 1000, 0 disables it). This replaces the DynamoDB Streams trigger.
+ * - API_KEY: when set, required as x-api-key on the /orders routes
+ */
+public class CloudCartServer {
+
+    private static final JsonLogger LOGGER = new JsonLogger("cloudcart-server", null);
+
+    public static void main(String[] args) throws IOException {
+        int port = envInt("PORT", 8080);
+        boolean memoryQueues = "memory".equalsIgnoreCase(System.getenv("QUEUE_MODE"));
+
+        // Before any handler class loads: handlers keep their SQS client in a static field
+        if (memoryQueues) AwsClients.overrideSqs(new InMemorySqsClient());
+
+        // Names, timeouts and memory sizes as in the service templates
+        LocalFunction listProducts = new LocalFunction("ListProductsFunctionDev", new ListProductsHandler(), 20, 128);
+        LocalFunction createProduct = new LocalFunction("CreateProductFunctionDev", new CreateProductHandler(), 20, 128);
+        LocalFunction getProduct = new LocalFunction("GetProductFunctionDev", new GetProductHandler(), 20, 128);
+        LocalFunction updateStock = new LocalFunction("UpdateStockFunctionDev", new UpdateStockHandler(), 20, 128);
+        LocalFunction batchStock = new LocalFunction("BatchStockFunctionDev", new BatchStockHandler(), 20, 128);
+        LocalFunction releaseStock = new LocalFunction("ReleaseStockFunctionDev", new ReleaseStockHandler(), 30, 128);
+        LocalFunction addToCart = new LocalFunction("AddToCartFunctionDev", new AddToCartHandler(), 10, 128);
+        LocalFunction viewCart = new LocalFunction("ViewCartFunctionDev", new ViewCartHandler(), 10, 128);
+        LocalFunction removeFromCart = new LocalFunction("RemoveFromCartFunctionDev", new RemoveFromCartHandler(), 10, 128);
+        LocalFunction updateQuantity = new LocalFunction("UpdateQuantityFunctionDev", new UpdateQuantityHandler(), 10, 128);
+        LocalFunction clearCart = new LocalFunction("ClearCartFunctionDev", new ClearCartHandler(), 10, 128);
+        LocalFunction placeOrder = new LocalFunction("PlaceOrderFunctionDev", new PlaceOrderHandler(), 15, 256);
+        LocalFunction getOrder = new LocalFunction("GetOrderFunctionDev", new GetOrderHandler(), 15, 256);
+        LocalFunction listOrders = new LocalFunction("ListOrdersFunctionDev", new ListOrdersHandler(), 15, 256);
+        LocalFunction outboxRelay = new LocalFunction("OutboxRelayFunctionDev", new OutboxRelayHandler(), 30, 256);
+        LocalFunction processPayment = new LocalFunction("ProcessPaymentFunctionDev", new ProcessPaymentHandler(), 30, 256);
+        LocalFunction processShipment = new LocalFunction("ProcessShipmentFunctionDev", new ProcessShipmentHandler(), 30, 256);
+
+        // Resources and methods as in cloudcart-gateway-template.yaml
+        List<Route> routes = List.of(
+                new Route("GET", "/products", listProducts, false),
+                new Route("POST", "/products", createProduct, false),
+                new Route("POST", "/products/stock", batchStock, false),
+                new Route("GET", "/products/{id}", getProduct, false),
+                new Route("PATCH", "/products/{id}/stock", updateStock, false),
+                new Route("POST", "/cart", addToCart, false),
+                new Route("GET", "/cart/{userId}", viewCart, false),
+                new Route("DELETE", "/cart/{userId}", clearCart, false),
+                new Route("DELETE", "/cart/{userId}/{productId}", removeFromCart, false),
+                new Route("PATCH", "/cart/{userId}/{productId}", updateQuantity, false),
+                new Route("POST", "/orders", placeOrder, true),
+                new Route("GET", "/orders", listOrders, true),
+                new Route("GET", "/orders/{orderId}", getOrder, true));
+
+        ExecutorService requests = Executors.newVirtualThreadPerTaskExecutor();
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/", new ApiGatewayAdapter(routes, System.getenv("API_KEY")));
+        server.setExecutor(requests);
+        server.start();
+
+        // Batch sizes and visibility timeouts as in the event source mappings and queues
+        List<SqsPoller> pollers = new ArrayList<>();
+        int pollersPerQueue = envInt("SQS_POLLERS", 2);
+        String orderQueueUrl = System.getenv("ORDER_QUEUE_URL");
+        String paymentSuccessQueueUrl = System.getenv("PAYMENT_SUCCESS_QUEUE_URL");
+        String stockReleaseQueueUrl = System.getenv("STOCK_RELEASE_QUEUE_URL");
+        for (int i = 0; i < pollersPerQueue; i++) {
+            if (orderQueueUrl != null) {
+                pollers.add(new SqsPoller(AwsClients.sqs(), orderQueueUrl, processPayment, 5, 60));
+            }
+            if (paymentSuccessQueueUrl != null) {
+                pollers.add(new SqsPoller(AwsClients.sqs(), paymentSuccessQueueUrl, processShipment, 5, 60));
+            }
+            if (stockReleaseQueueUrl != null) {
+                pollers.add(new SqsPoller(AwsClients.sqs(), stockReleaseQueueUrl, releaseStock, 10, 60));
+            }
+        }
+        for (SqsPoller poller : pollers) {
+            Thread.ofVirtual().name("sqs-poller").start(poller);
+        }
+
+        ScheduledExecutorService outbox = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().factory());
+        int outboxPollMillis = envInt("OUTBOX_POLL_MS", 1000);
+        if (outboxPollMillis > 0 && System.getenv("OUTBOX_TABLE") != null && orderQueueUrl != null) {
+            outbox.scheduleWithFixedDelay(() -> {
+                try {
+                    outboxRelay.invoke(new HashMap<>(), null);
+                } catch (Exception e) {
+                    LOGGER.error("Outbox relay failed", Map.of("error", String.valueOf(e.getMessage())));
+                }
+            }, outboxPollMillis, outboxPollMillis, TimeUnit.MILLISECONDS);
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            pollers.forEach(SqsPoller::stop);
+            outbox.shutdown();
+            // Give in-flight requests a moment to finish
+            server.stop(5);
+            requests.close();
+        }));
+
+        LOGGER.info("CloudCart server started", Map.of(
+                "port", port,
+                "routes", routes.size(),
+                "queueMode", memoryQueues ? "memory" : "sqs",
+                "pollers", pollers.size()));
+    }
+
+    private static int envInt(String name, int defaultValue) {
+        String value = System.getenv(name);
+        return value != null && !value.isBlank() ? Integer.parseInt(value) : defaultValue;
+    }
+}
@@ -0,0 +1,34 @@
+package com.cloudcart.server;
+
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+
+import java.util.Map;
+
+/**
+ * One handler instance hosted in-process, with the name, timeout and memory size
+ * its CloudFormation template gives the function. The instance is shared by all
+ * requests, like a warm Lambda container, except that here it is called concurrently.
+ */
+public class LocalFunction {
+
+    private final String name;
+    private final RequestHandler<Map<String, Object>, Map<String, Object>> handler;
+    private final int timeoutSeconds;
+    private final int memoryMb;
+
+    public LocalFunction(String name, RequestHandler<Map<String, Object>, Map<String, Object>> handler,
+                         int timeoutSeconds, int memoryMb) {
+        this.name = name;
+        this.handler = handler;
+        this.timeoutSeconds = timeoutSeconds;
+        this.memoryMb = memoryMb;
+    }
+
+    public Map<String, Object> invoke(Map<String, Object> event, String requestId) {
+        return handler.handleRequest(event, new LocalContext(requestId, name, timeoutSeconds, memoryMb));
+    }
+
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,168 @@
+package com.cloudcart.server.http;
+
+import com.cloudcart.common.util.JsonLogger;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Translates HTTP requests into the API Gateway REST (v1) proxy event the handlers
+ * expect, and their {statusCode, headers, body} result back into a response.
+ *
+ * Header names are lower-cased, since the JDK server rewrites their case anyway.
+ * Handlers already accept lower-case names. When API_KEY is set, routes that
+ * require a key on API Gateway compare it to the x-api-key header.
+ */
+public class ApiGatewayAdapter implements HttpHandler {
+
+    private final List<Route> routes;
+    private final String apiKey;
+
+    public ApiGatewayAdapter(List<Route> routes, String apiKey) {
+        this.routes = routes;
+        this.apiKey = apiKey;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        String requestId = UUID.randomUUID().toString();
+        try {
+            String method = exchange.getRequestMethod();
+            String[] pathSegments = decodeSegments(exchange.getRequestURI().getRawPath());
+
+            Route route = null;
+            Map<String, String> pathParameters = null;
+            boolean pathMatched = false;
+            for (Route candidate : routes) {
+                Map<String, String> params = candidate.match(pathSegments);
+                if (params == null) continue;
+                pathMatched = true;
+                if (!candidate.getMethod().equals(method)) continue;
+                if (route == null || candidate.specificity() > route.specificity()) {
+                    route = candidate;
+                    pathParameters = params;
+                }
+            }
+            if (route == null) {
+                send(exchange, pathMatched ? 405 : 404, requestId, null,
+                        pathMatched ? "{\"message\":\"Method Not Allowed\"}" : "{\"message\":\"Not Found\"}");
+                return;
+            }
+
+            Map<String, Object> headers = headers(exchange.getRequestHeaders());
+            if (route.isApiKeyRequired() && apiKey != null && !apiKey.equals(headers.get("x-api-key"))) {
+                send(exchange, 403, requestId, null, "{\"message\":\"Forbidden\"}");
+                return;
+            }
+
+            Map<String, Object> event = event(exchange, route, pathParameters, headers, requestId);
+            Map<String, Object> result = route.getFunction().invoke(event, requestId);
+            send(exchange, result, requestId);
+        } catch (Exception e) {
+            // What API Gateway returns when the integration itself fails
+            new JsonLogger("cloudcart-server", null).error("Handler invocation failed", Map.of(
+                    "requestId", requestId, "error", String.valueOf(e.getMessage())));
+            send(exchange, 502, requestId, null, "{\"message\":\"Internal server error\"}");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private Map<String, Object> event(HttpExchange exchange, Route route, Map<String, String> pathParameters,
+                                      Map<String, Object> headers, String requestId) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        byte[] body = exchange.getRequestBody().readAllBytes();
+
+        Map<String, Object> requestContext = new HashMap<>();
+        requestContext.put("requestId", requestId);
+        requestContext.put("httpMethod", route.getMethod());
+        requestContext.put("resourcePath", route.getResource());
+        requestContext.put("path", path);
+        requestContext.put("stage", "local");
+        requestContext.put("requestTimeEpoch", System.currentTimeMillis());
+
+        Map<String, Object> event = new HashMap<>();
+        event.put("resource", route.getResource());
+        event.put("path", path);
+        event.put("httpMethod", route.getMethod());
+        event.put("headers", headers);
+        event.put("pathParameters", pathParameters.isEmpty() ? null : pathParameters);
+        event.put("queryStringParameters", query(exchange.getRequestURI().getRawQuery()));
+        event.put("requestContext", requestContext);
+        event.put("body", body.length == 0 ? null : new String(body, StandardCharsets.UTF_8));
+        event.put("isBase64Encoded", false);
+        return event;
+    }
+
+    private static Map<String, Object> headers(Headers requestHeaders) {
+        Map<String, Object> headers = new HashMap<>();
+        for (Map.Entry<String, List<String>> header : requestHeaders.entrySet()) {
+            List<String> values = header.getValue();
+            if (!values.isEmpty()) headers.put(header.getKey().toLowerCase(), values.get(values.size() - 1));
+        }
+        return headers;
+    }
+
+    // Last value wins for repeated keys, as in API Gateway's queryStringParameters
+    private static Map<String, String> query(String rawQuery) {
+        if (rawQuery == null || rawQuery.isEmpty()) return null;
+        Map<String, String> params = new HashMap<>();
+        for (String pair : rawQuery.split("&")) {
+            if (pair.isEmpty()) continue;
+            int eq = pair.indexOf('=');
+            String name = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static String[] decodeSegments(String rawPath) {
+        String[] segments = Route.split(rawPath);
+        for (int i = 0; i < segments.length; i++) {
+            // Path segments are percent-encoded only; '+' is literal
+            segments[i] = URLDecoder.decode(segments[i].replace("+", "%2B"), StandardCharsets.UTF_8);
+        }
+        return segments;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void send(HttpExchange exchange, Map<String, Object> result, String requestId) throws IOException {
+        Object status = result != null ? result.get("statusCode") : null;
+        if (!(status instanceof Number)) {
+            send(exchange, 502, requestId, null, "{\"message\":\"Internal server error\"}");
+            return;
+        }
+        Object body = result.get("body");
+        send(exchange, ((Number) status).intValue(), requestId,
+                (Map<String, Object>) result.get("headers"), body != null ? body.toString() : null);
+    }
+
+    private static void send(HttpExchange exchange, int status, String requestId,
+                             Map<String, Object> headers, String body) throws IOException {
+        Headers responseHeaders = exchange.getResponseHeaders();
+        if (headers != null) {
+            headers.forEach((name, value) -> responseHeaders.set(name, String.valueOf(value)));
+        }
+        if (!responseHeaders.containsKey("Content-Type")) responseHeaders.set("Content-Type", "application/json");
+        responseHeaders.set("x-amzn-RequestId", requestId);
+
+        byte[] bytes = body != null ? body.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        boolean noBody = bytes.length == 0 || status == 204 || "HEAD".equals(exchange.getRequestMethod());
+        exchange.sendResponseHeaders(status, noBody ? -1 : bytes.length);
+        if (!noBody) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+}
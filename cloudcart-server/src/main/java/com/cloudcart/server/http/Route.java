@@ -0,0 +1,72 @@
+package com.cloudcart.server.http;
+
+import com.cloudcart.server.LocalFunction;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An API Gateway method: HTTP method plus resource path such as
+ * "/products/{id}/stock", integrated with one function.
+ */
+public class Route {
+
+    private final String method;
+    private final String resource;
+    private final String[] segments;
+    private final LocalFunction function;
+    private final boolean apiKeyRequired;
+
+    public Route(String method, String resource, LocalFunction function, boolean apiKeyRequired) {
+        this.method = method;
+        this.resource = resource;
+        this.segments = split(resource);
+        this.function = function;
+        this.apiKeyRequired = apiKeyRequired;
+    }
+
+    /** Path parameters if the decoded path segments match this resource, else null. */
+    Map<String, String> match(String[] pathSegments) {
+        if (pathSegments.length != segments.length) return null;
+        Map<String, String> params = new HashMap<>();
+        for (int i = 0; i < segments.length; i++) {
+            String segment = segments[i];
+            if (segment.startsWith("{") && segment.endsWith("}")) {
+                params.put(segment.substring(1, segment.length() - 1), pathSegments[i]);
+            } else if (!segment.equals(pathSegments[i])) {
+                return null;
+            }
+        }
+        return params;
+    }
+
+    /** Number of literal segments; the most specific match wins, as in API Gateway. */
+    int specificity() {
+        int literals = 0;
+        for (String segment : segments) {
+            if (!segment.startsWith("{")) literals++;
+        }
+        return literals;
+    }
+
+    static String[] split(String path) {
+        String trimmed = path.replaceAll("^/+|/+$", "");
+        return trimmed.isEmpty() ? new String[0] : trimmed.split("/");
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getResource() {
+        return resource;
+    }
+
+    public LocalFunction getFunction() {
+        return function;
+    }
+
+    public boolean isApiKeyRequired() {
+        return apiKeyRequired;
+    }
+}
@@ -0,0 +1,207 @@
+package com.cloudcart.server.queue;
+
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchResponse;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchResultEntry;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageRequest;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageResponse;
+import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.MessageAttributeValue;
+import software.amazon.awssdk.services.sqs.model.MessageSystemAttributeName;
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest;
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageResponse;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResponse;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResultEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageResponse;
+import software.amazon.awssdk.services.sqs.model.SqsException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Process-local stand-in for SQS standard queues, keyed by queue URL. Any string
+ * works as a URL, and a queue is created on first use.
+ *
+ * Supports the calls CloudCart makes: SendMessage, SendMessageBatch,
+ * ReceiveMessage (long polling and visibility timeout), DeleteMessage and
+ * DeleteMessageBatch. A received message that is not deleted becomes visible
+ * again when its visibility timeout expires, which is how the pollers'
+ * partial batch failures get retried. Every other operation throws
+ * UnsupportedOperationException. Messages do not survive a restart.
+ */
+public class InMemorySqsClient implements SqsClient {
+
+    private static final int DEFAULT_VISIBILITY_TIMEOUT_SECONDS = 30;
+    // How often a long poll re-checks for messages whose visibility timeout expired
+    private static final long REQUEUE_CHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
+    private final Map<String, Queue> queues = new ConcurrentHashMap<>();
+
+    @Override
+    public SendMessageResponse sendMessage(SendMessageRequest request) {
+        String messageId = queue(request.queueUrl()).add(request.messageBody(), request.messageAttributes());
+        return SendMessageResponse.builder().messageId(messageId).build();
+    }
+
+    @Override
+    public SendMessageBatchResponse sendMessageBatch(SendMessageBatchRequest request) {
+        Queue queue = queue(request.queueUrl());
+        List<SendMessageBatchResultEntry> successful = new ArrayList<>();
+        for (SendMessageBatchRequestEntry entry : request.entries()) {
+            String messageId = queue.add(entry.messageBody(), entry.messageAttributes());
+            successful.add(SendMessageBatchResultEntry.builder().id(entry.id()).messageId(messageId).build());
+        }
+        return SendMessageBatchResponse.builder().successful(successful).failed(List.of()).build();
+    }
+
+    @Override
+    public ReceiveMessageResponse receiveMessage(ReceiveMessageRequest request) {
+        int max = request.maxNumberOfMessages() != null ? request.maxNumberOfMessages() : 1;
+        int wait = request.waitTimeSeconds() != null ? request.waitTimeSeconds() : 0;
+        int visibility = request.visibilityTimeout() != null
+                ? request.visibilityTimeout() : DEFAULT_VISIBILITY_TIMEOUT_SECONDS;
+        try {
+            return ReceiveMessageResponse.builder()
+                    .messages(queue(request.queueUrl()).receive(max, wait, visibility))
+                    .build();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw SqsException.builder().message("Interrupted while receiving").cause(e).build();
+        }
+    }
+
+    @Override
+    public DeleteMessageResponse deleteMessage(DeleteMessageRequest request) {
+        queue(request.queueUrl()).delete(request.receiptHandle());
+        return DeleteMessageResponse.builder().build();
+    }
+
+    @Override
+    public DeleteMessageBatchResponse deleteMessageBatch(DeleteMessageBatchRequest request) {
+        Queue queue = queue(request.queueUrl());
+        List<DeleteMessageBatchResultEntry> successful = new ArrayList<>();
+        for (DeleteMessageBatchRequestEntry entry : request.entries()) {
+            queue.delete(entry.receiptHandle());
+            successful.add(DeleteMessageBatchResultEntry.builder().id(entry.id()).build());
+        }
+        return DeleteMessageBatchResponse.builder().successful(successful).failed(List.of()).build();
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private Queue queue(String queueUrl) {
+        if (queueUrl == null) throw SqsException.builder().message("QueueUrl is required").build();
+        return queues.computeIfAbsent(queueUrl, url -> new Queue());
+    }
+
+    private static final class Entry {
+        final String messageId = UUID.randomUUID().toString();
+        final String body;
+        final Map<String, MessageAttributeValue> attributes;
+        final long sentTimestamp = System.currentTimeMillis();
+        int receiveCount;
+        long visibleAt;
+
+        Entry(String body, Map<String, MessageAttributeValue> attributes) {
+            this.body = body;
+            this.attributes = attributes;
+        }
+    }
+
+    // ReentrantLock rather than synchronized: pollers block here on virtual threads
+    private static final class Queue {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition notEmpty = lock.newCondition();
+        private final ArrayDeque<Entry> ready = new ArrayDeque<>();
+        private final Map<String, Entry> inFlight = new HashMap<>();
+
+        String add(String body, Map<String, MessageAttributeValue> attributes) {
+            Entry entry = new Entry(body, attributes);
+            lock.lock();
+            try {
+                ready.addLast(entry);
+                notEmpty.signal();
+            } finally {
+                lock.unlock();
+            }
+            return entry.messageId;
+        }
+
+        List<Message> receive(int max, int waitSeconds, int visibilitySeconds) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(waitSeconds);
+            lock.lock();
+            try {
+                while (true) {
+                    requeueExpired();
+                    long remaining = deadline - System.nanoTime();
+                    if (!ready.isEmpty() || remaining <= 0) break;
+                    notEmpty.awaitNanos(Math.min(remaining, REQUEUE_CHECK_NANOS));
+                }
+                List<Message> messages = new ArrayList<>();
+                long visibleAt = System.currentTimeMillis() + visibilitySeconds * 1000L;
+                while (messages.size() < max && !ready.isEmpty()) {
+                    Entry entry = ready.pollFirst();
+                    entry.receiveCount++;
+                    entry.visibleAt = visibleAt;
+                    String receiptHandle = UUID.randomUUID().toString();
+                    inFlight.put(receiptHandle, entry);
+                    messages.add(Message.builder()
+                            .messageId(entry.messageId)
+                            .receiptHandle(receiptHandle)
+                            .body(entry.body)
+                            .messageAttributes(entry.attributes)
+                            .attributes(Map.of(
+                                    MessageSystemAttributeName.SENT_TIMESTAMP, String.valueOf(entry.sentTimestamp),
+                                    MessageSystemAttributeName.APPROXIMATE_RECEIVE_COUNT, String.valueOf(entry.receiveCount)))
+                            .build());
+                }
+                return messages;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Deleting with a handle whose message was already re-queued is a no-op
+        void delete(String receiptHandle) {
+            lock.lock();
+            try {
+                inFlight.remove(receiptHandle);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void requeueExpired() {
+            long now = System.currentTimeMillis();
+            Iterator<Entry> it = inFlight.values().iterator();
+            while (it.hasNext()) {
+                Entry entry = it.next();
+                if (entry.visibleAt <= now) {
+                    it.remove();
+                    ready.addLast(entry);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.cloudcart.server.queue;
+
+import com.cloudcart.common.util.JsonLogger;
+import com.cloudcart.server.LocalFunction;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.MessageAttributeValue;
+import software.amazon.awssdk.services.sqs.model.QueueAttributeName;
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-process replacement for an SQS event source mapping with
+ * ReportBatchItemFailures. It long-polls a queue and hands each batch to the
+ * function as the SQS event Lambda would send. Messages are deleted unless the
+ * function lists them in batchItemFailures. If the function throws, the whole
+ * batch stays on the queue until its visibility timeout expires.
+ */
+public class SqsPoller implements Runnable {
+
+    private static final int WAIT_TIME_SECONDS = 20;
+    private static final long ERROR_BACKOFF_MS = 1000;
+
+    private final SqsClient sqs;
+    private final String queueUrl;
+    private final LocalFunction function;
+    private final int batchSize;
+    private final int visibilityTimeoutSeconds;
+    private final String eventSourceArn;
+    private final JsonLogger logger = new JsonLogger("cloudcart-server", null);
+    private volatile boolean running = true;
+
+    public SqsPoller(SqsClient sqs, String queueUrl, LocalFunction function, int batchSize, int visibilityTimeoutSeconds) {
+        this.sqs = sqs;
+        this.queueUrl = queueUrl;
+        this.function = function;
+        this.batchSize = batchSize;
+        this.visibilityTimeoutSeconds = visibilityTimeoutSeconds;
+        this.eventSourceArn = arnOf(queueUrl);
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                List<Message> messages = sqs.receiveMessage(ReceiveMessageRequest.builder()
+                        .queueUrl(queueUrl)
+                        .maxNumberOfMessages(batchSize)
+                        .waitTimeSeconds(WAIT_TIME_SECONDS)
+                        .visibilityTimeout(visibilityTimeoutSeconds)
+                        .attributeNames(QueueAttributeName.ALL)
+                        .messageAttributeNames("All")
+                        .build()).messages();
+                if (!messages.isEmpty()) deliver(messages);
+            } catch (Exception e) {
+                if (!running) break;
+                logger.error("Queue poll failed", Map.of(
+                        "function", function.getName(), "error", String.valueOf(e.getMessage())));
+                sleep(ERROR_BACKOFF_MS);
+            }
+        }
+    }
+
+    public void stop() {
+        running = false;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void deliver(List<Message> messages) {
+        List<Map<String, Object>> records = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            records.add(record(message));
+        }
+        Map<String, Object> event = new HashMap<>();
+        event.put("Records", records);
+
+        Map<String, Object> result = function.invoke(event, null);
+
+        Set<String> failed = new HashSet<>();
+        Object failures = result != null ? result.get("batchItemFailures") : null;
+        if (failures instanceof List<?> list) {
+            for (Object item : list) {
+                Object id = ((Map<String, Object>) item).get("itemIdentifier");
+                if (id != null) failed.add(id.toString());
+            }
+        }
+
+        List<DeleteMessageBatchRequestEntry> deletes = new ArrayList<>();
+        for (Message message : messages) {
+            if (failed.contains(message.messageId())) continue;
+            deletes.add(DeleteMessageBatchRequestEntry.builder()
+                    .id(String.valueOf(deletes.size()))
+                    .receiptHandle(message.receiptHandle())
+                    .build());
+        }
+        // Batch size is capped at 10, the DeleteMessageBatch limit
+        if (!deletes.isEmpty()) {
+            sqs.deleteMessageBatch(DeleteMessageBatchRequest.builder().queueUrl(queueUrl).entries(deletes).build());
+        }
+    }
+
+    private Map<String, Object> record(Message message) {
+        Map<String, Object> messageAttributes = new HashMap<>();
+        for (Map.Entry<String, MessageAttributeValue> attribute : message.messageAttributes().entrySet()) {
+            Map<String, Object> value = new HashMap<>();
+            value.put("dataType", attribute.getValue().dataType());
+            value.put("stringValue", attribute.getValue().stringValue());
+            messageAttributes.put(attribute.getKey(), value);
+        }
+
+        Map<String, Object> record = new HashMap<>();
+        record.put("messageId", message.messageId());
+        record.put("receiptHandle", message.receiptHandle());
+        record.put("body", message.body());
+        record.put("attributes", new HashMap<>(message.attributesAsStrings()));
+        record.put("messageAttributes", messageAttributes);
+        record.put("md5OfBody", message.md5OfBody());
+        record.put("eventSource", "aws:sqs");
+        record.put("eventSourceARN", eventSourceArn);
+        return record;
+    }
+
+    // .../<account>/<queue-name> → arn:aws:sqs:local:<account>:<queue-name>
+    private static String arnOf(String queueUrl) {
+        String path = queueUrl.contains("://") ? URI.create(queueUrl).getPath() : queueUrl;
+        String[] parts = path.replaceAll("^/+", "").split("/");
+        String name = parts[parts.length - 1];
+        String account = parts.length > 1 ? parts[parts.length - 2] : "000000000000";
+        return "arn:aws:sqs:local:" + account + ":" + name;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
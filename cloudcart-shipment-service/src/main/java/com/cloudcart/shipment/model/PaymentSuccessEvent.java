@@ -1,12 +1,19 @@
 package com.cloudcart.shipment.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
 import java.util.List;
 
+// Tolerates fields added by newer payment-service versions
+@JsonIgnoreProperties(ignoreUnknown = true)
 public class PaymentSuccessEvent {
     private String orderId;
     private String userId;
     private List<OrderItem> items;
     private double totalAmount;
+    private String correlationId;
+    private String placedAt;
+    private String paidAt;
 
     public PaymentSuccessEvent() {}
 
@@ -21,4 +28,13 @@ public class PaymentSuccessEvent {
 
     public double getTotalAmount() { return totalAmount; }
     public void setTotalAmount(double totalAmount) { this.totalAmount = totalAmount; }
+
+    public String getCorrelationId() { return correlationId; }
+    public void setCorrelationId(String correlationId) { this.correlationId = correlationId; }
+
+    public String getPlacedAt() { return placedAt; }
+    public void setPlacedAt(String placedAt) { this.placedAt = placedAt; }
+
+    public String getPaidAt() { return paidAt; }
+    public void setPaidAt(String paidAt) { this.paidAt = paidAt; }
 }
@@ -15,6 +15,9 @@ ORDER_JAR="order-service-1.0.0.jar"
 PAYMENT_JAR="payment-service-1.0.0.jar"
 SHIPMENT_JAR="shipment-service-1.0.0.jar"
 
+echo "==> Installing shared module..."
+mvn -f "cloudcart-common/pom.xml" install -q -DskipTests
+
 echo "==> Building cart service..."
 mvn -f "$CART_DIR/pom.xml" package -q -DskipTests
 
@@ -38,6 +41,17 @@ awslocal s3 cp "$ORDER_DIR/target/$ORDER_JAR"       "s3://$S3_BUCKET/$ORDER_JAR"
 awslocal s3 cp "$PAYMENT_DIR/target/$PAYMENT_JAR"   "s3://$S3_BUCKET/$PAYMENT_JAR"
 awslocal s3 cp "$SHIPMENT_DIR/target/$SHIPMENT_JAR" "s3://$S3_BUCKET/$SHIPMENT_JAR"
 
+# LAMBDA_LAYOUT=router deploys one routed function per service API instead of one per route
+if [ "${LAMBDA_LAYOUT:-per-route}" = "router" ]; then
+  CART_TEMPLATE="$CART_DIR/cloudcart-cart-router-template.yaml"
+  PRODUCT_TEMPLATE="$PRODUCT_DIR/cloudcart-router-template.yaml"
+  ORDER_TEMPLATE="$ORDER_DIR/cloudcart-order-router-template.yaml"
+else
+  CART_TEMPLATE="$CART_DIR/cloudcart-cart-template.yaml"
+  PRODUCT_TEMPLATE="$PRODUCT_DIR/cloudcart-template.yaml"
+  ORDER_TEMPLATE="$ORDER_DIR/cloudcart-order-template.yaml"
+fi
+
 cf_deploy() {
   # cloudformation deploy exits 255 when there are no changes; treat that as success
   awslocal cloudformation deploy "$@" || { [ $? -eq 255 ] && echo "  (no changes)"; }
@@ -45,20 +59,20 @@ cf_deploy() {
 
 echo "==> Deploying cart service stack..."
 cf_deploy \
-  --template-file "$CART_DIR/cloudcart-cart-template.yaml" \
+  --template-file "$CART_TEMPLATE" \
   --stack-name cloudcart-cart-dev \
   --capabilities CAPABILITY_NAMED_IAM
 
 echo "==> Deploying product catalog stack..."
 cf_deploy \
-  --template-file "$PRODUCT_DIR/cloudcart-template.yaml" \
+  --template-file "$PRODUCT_TEMPLATE" \
   --stack-name cloudcart-products-dev \
   --capabilities CAPABILITY_NAMED_IAM
 
 # Order stack must deploy before payment and shipment (both import queue ARNs and table name)
 echo "==> Deploying order service stack..."
 cf_deploy \
-  --template-file "$ORDER_DIR/cloudcart-order-template.yaml" \
+  --template-file "$ORDER_TEMPLATE" \
   --stack-name cloudcart-order-dev \
   --capabilities CAPABILITY_NAMED_IAM
 